@@ -0,0 +1,127 @@
+/*
+ * Copyright 2017 NKI/AvL; VUmc 2018/2019/2020
+ *
+ * This file is part of PALGA Protocol Data Translator.
+ *
+ * PALGA Protocol Data Translator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PALGA Protocol Data Translator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PALGA Protocol Data Translator. If not, see <http://www.gnu.org/licenses/>
+ */
+
+package palgadatatranslator.cli;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import palgadatatranslator.settings.RunParameters;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * translates a batch of data files on a bounded pool of workers
+ * the codebook managers, and with them the codebooks, are shared by all files of the batch, so each codebook version
+ * is retrieved and parsed once, however many files use it
+ *
+ * a line with the summary of each file is written to standard error once the file is done, followed by a line with
+ * the summary of the batch
+ */
+class BatchTranslator {
+    private static final Logger logger = LogManager.getLogger(BatchTranslator.class.getName());
+
+    private final List<RunParameters> runParametersList;
+    private final int jobs;
+
+    /**
+     * new batch translator
+     * @param runParametersList the parameters of each file of the batch
+     * @param jobs              the number of files which are translated at the same time
+     */
+    BatchTranslator(List<RunParameters> runParametersList, int jobs){
+        this.runParametersList = runParametersList;
+        this.jobs = jobs;
+    }
+
+    /**
+     * checks that the files of the batch can be translated: each input has to exist and no two inputs may be
+     * written to the same output file
+     * @param outputDirectory the output directory, which is created if it does not exist yet; may be null
+     * @return true/false
+     */
+    boolean validSettings(Path outputDirectory){
+        if(runParametersList.isEmpty()){
+            logger.log(Level.ERROR, "There are no data files to translate");
+            return false;
+        }
+        Set<String> outputFiles = new HashSet<>();
+        for(RunParameters runParameters : runParametersList){
+            if(!runParameters.validSettings()){
+                logger.log(Level.ERROR, "{} is not a valid data file", runParameters.getInputFileName());
+                return false;
+            }
+            if(!outputFiles.add(Path.of(runParameters.getDataOutFileName()).toAbsolutePath().normalize().toString())){
+                logger.log(Level.ERROR, "More than one data file would be written to {}", runParameters.getDataOutFileName());
+                return false;
+            }
+        }
+        if(outputDirectory != null){
+            try {
+                Files.createDirectories(outputDirectory);
+            } catch (IOException e){
+                logger.log(Level.ERROR, "Could not create the output directory {}: {}", outputDirectory, e.getMessage());
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * translates the files and reports the summary of each of them
+     * @return the number of files of which the translation failed
+     */
+    int run(){
+        long start = System.nanoTime();
+        logger.log(Level.INFO, "Translating {} data file(s), {} at a time", runParametersList.size(), jobs);
+        ExecutorService executorService = Executors.newFixedThreadPool(jobs);
+        CompletionService<TranslationJob> completionService = new ExecutorCompletionService<>(executorService);
+        try {
+            for(RunParameters runParameters : runParametersList){
+                TranslationJob translationJob = new TranslationJob(runParameters);
+                completionService.submit(() -> {
+                    translationJob.run();
+                    return translationJob;
+                });
+            }
+
+            int failed = 0;
+            for(int i=0; i<runParametersList.size(); i++){
+                TranslationJob translationJob = completionService.take().get();
+                if(translationJob.isFailed()){
+                    failed++;
+                }
+                System.err.println("file="+translationJob.getRunParameters().getInputFileName()+" "+translationJob.getSummary());
+            }
+            System.err.println("status="+(failed == 0 ? "ok" : "failed")+" files="+runParametersList.size()+" failed="+failed+" total_ms="+(System.nanoTime() - start) / 1000000);
+            return failed;
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("The batch translation was interrupted");
+        } catch (ExecutionException e){
+            throw new RuntimeException("A fatal error occurred while translating the batch: "+e.getCause().getMessage());
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+}
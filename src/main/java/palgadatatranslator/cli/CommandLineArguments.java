@@ -0,0 +1,380 @@
+/*
+ * Copyright 2017 NKI/AvL; VUmc 2018/2019/2020
+ *
+ * This file is part of PALGA Protocol Data Translator.
+ *
+ * PALGA Protocol Data Translator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PALGA Protocol Data Translator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PALGA Protocol Data Translator. If not, see <http://www.gnu.org/licenses/>
+ */
+
+package palgadatatranslator.cli;
+
+import palgadatatranslator.settings.GlobalSettings;
+import palgadatatranslator.settings.OutputTarget;
+import palgadatatranslator.settings.RunParameters;
+import palgadatatranslator.utils.enumerate.InputFileType;
+import palgadatatranslator.utils.enumerate.OutputFileType;
+import palgadatatranslator.utils.enumerate.OutputFormatType;
+import palgadatatranslator.utils.enumerate.OutputLayout;
+import palgadatatranslator.utils.enumerate.ProcessingMode;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * arguments of the command line translator
+ * invalid arguments result in an IllegalArgumentException, of which the message explains what is wrong
+ *
+ * the arguments describe a batch when several inputs are given, an input is a directory or a list file is given;
+ * the output is then a directory in which the output file of each input is written
+ */
+class CommandLineArguments {
+    private static final Set<String> optionsWithValue = Set.of("-i", "--input", "-o", "--output", "-p", "--protocol",
+            "-l", "--language", "-f", "--format", "-t", "--type", "-m", "--mode", "--threads", "--server", "--timeout", "--cache",
+            "--list", "--jobs", "--layout");
+    // files in an input directory which are translated, skipping the output of earlier runs and the lock files of Excel
+    private static final String outputFileSuffix = "_out";
+    private static final String excelLockFilePrefix = "~$";
+
+    private final List<String> inputFileNames = new ArrayList<>();
+    private Path listFile;
+    private String dataOutFileName;
+    private String protocolName;
+    private String fromLanguage = "nl-NL";
+    // the outputs are all combinations of the output format types and output file types
+    private final Set<OutputFormatType> outputFormatTypes = new LinkedHashSet<>();
+    private final Set<OutputFileType> outputFileTypes = new LinkedHashSet<>();
+    private ProcessingMode processingMode = ProcessingMode.BUFFERED;
+    private OutputLayout outputLayout = OutputLayout.WIDE;
+    private Integer translationThreads;
+    private Integer jobs;
+    private String server;
+    private Integer timeoutSeconds;
+    private Path cacheDirectory;
+    private boolean disableCache = false;
+    private boolean help = false;
+
+    private CommandLineArguments(){
+    }
+
+    /**
+     * parses the command line arguments
+     * @param args the command line arguments
+     * @return the parsed arguments
+     */
+    static CommandLineArguments parse(String [] args){
+        CommandLineArguments arguments = new CommandLineArguments();
+        for(int i=0; i<args.length; i++){
+            String option = args[i];
+            if(option.equals("-h") || option.equals("--help")){
+                arguments.help = true;
+                return arguments;
+            }
+            if(!optionsWithValue.contains(option)){
+                throw new IllegalArgumentException("unknown option "+option);
+            }
+            if(i+1 >= args.length){
+                throw new IllegalArgumentException("missing value for "+option);
+            }
+            String value = args[++i];
+            switch (option) {
+                case "-i", "--input" -> arguments.inputFileNames.add(value);
+                case "--list" -> arguments.listFile = Path.of(value);
+                case "--jobs" -> arguments.jobs = parseCount(option, value);
+                case "-o", "--output" -> arguments.dataOutFileName = value;
+                case "-p", "--protocol" -> arguments.protocolName = value;
+                case "-l", "--language" -> arguments.fromLanguage = value;
+                case "-f", "--format" -> arguments.outputFormatTypes.add(parseEnum(option, value, OutputFormatType.values(), OutputFormatType::getEnum));
+                case "-t", "--type" -> arguments.outputFileTypes.add(parseEnum(option, value, OutputFileType.values(), OutputFileType::getEnum));
+                case "-m", "--mode" -> arguments.processingMode = parseEnum(option, value, ProcessingMode.values(), ProcessingMode::getEnum);
+                case "--layout" -> arguments.outputLayout = parseEnum(option, value, OutputLayout.values(), OutputLayout::getEnum);
+                case "--threads" -> arguments.translationThreads = parseCount(option, value);
+                case "--server" -> arguments.server = value.endsWith("/") ? value : value + "/";
+                case "--timeout" -> arguments.timeoutSeconds = parseCount(option, value);
+                case "--cache" -> {
+                    arguments.disableCache = value.equalsIgnoreCase("none");
+                    arguments.cacheDirectory = arguments.disableCache ? null : Path.of(value);
+                }
+                default -> throw new IllegalArgumentException("unknown option "+option);
+            }
+        }
+
+        if(arguments.outputFormatTypes.isEmpty()){
+            arguments.outputFormatTypes.add(OutputFormatType.DESCRIPTIONS);
+        }
+        if(arguments.outputFileTypes.isEmpty()){
+            arguments.outputFileTypes.add(OutputFileType.TEXT);
+        }
+        if(arguments.inputFileNames.isEmpty() && arguments.listFile == null){
+            throw new IllegalArgumentException("no input file given");
+        }
+        if(arguments.isBatch()){
+            if(arguments.inputFileNames.contains(RunParameters.STANDARD_STREAM) || RunParameters.STANDARD_STREAM.equals(arguments.dataOutFileName)){
+                throw new IllegalArgumentException("standard input and output cannot be used when translating several files");
+            }
+            if(arguments.dataOutFileName != null && Files.exists(Path.of(arguments.dataOutFileName)) && !Files.isDirectory(Path.of(arguments.dataOutFileName))){
+                throw new IllegalArgumentException("the output has to be a directory when translating several files");
+            }
+        }
+        if(arguments.protocolName == null){
+            throw new IllegalArgumentException("no protocol given");
+        }
+        if(GlobalSettings.getProtocolPrefix(arguments.protocolName) == null){
+            throw new IllegalArgumentException("unknown protocol \""+arguments.protocolName+"\"; expected one of "+GlobalSettings.getProtocols());
+        }
+        return arguments;
+    }
+
+    /**
+     * returns the usage text
+     * @return the usage text
+     */
+    static String getUsage(){
+        return String.join(System.lineSeparator(),
+                "usage: java -cp <jar> palgadatatranslator.cli.CommandLineTranslator -i <file> -p <protocol> [options]",
+                "  -i, --input <file>      data file to translate (text or xlsx); - reads standard input",
+                "                          may be repeated, or be a directory of which all *.txt and *.xlsx files are translated",
+                "      --list <file>       file listing data files to translate, one per line",
+                "  -o, --output <file>     output file; - writes standard output",
+                "                          (default: <input>_out.<type>, or standard output when reading standard input)",
+                "                          output directory when translating several files (default: next to each input)",
+                "      --jobs <n>          number of files translated at the same time (default: number of processors)",
+                "  -p, --protocol <name>   protocol used to collect the data: "+String.join(", ", GlobalSettings.getProtocols()),
+                "  -l, --language <code>   language of the data (default: nl-NL)",
+                "  -f, --format <format>   "+Arrays.toString(OutputFormatType.values())+" (default: DESCRIPTIONS)",
+                "  -t, --type <type>       "+Arrays.toString(OutputFileType.values())+" (default: TEXT)",
+                "                          -f and -t may be repeated; each combination is written while translating once,",
+                "                          to <output>_<format>.<type> when there is more than one",
+                "  -m, --mode <mode>       "+Arrays.toString(ProcessingMode.values())+" (default: BUFFERED)",
+                "      --layout <layout>   "+Arrays.toString(OutputLayout.values())+" (default: WIDE)",
+                "                          ENTITY_ATTRIBUTE_VALUE writes a line for each value which is not empty",
+                "      --threads <n>       number of translation threads per file",
+                "                          (default: number of processors, divided by the number of jobs)",
+                "      --server <url>      ART-DECOR services to retrieve the codebooks from",
+                "      --timeout <seconds> time a request to the ART-DECOR services may take (default: 300)",
+                "      --cache <dir>       directory in which codebooks are cached; none disables the cache",
+                "  -h, --help              show this text",
+                "exit codes: 0 translated, 1 translation failed, 2 invalid arguments");
+    }
+
+    /**
+     * applies the settings which are not part of the run parameters to the global settings
+     */
+    void applyGlobalSettings(){
+        if(translationThreads != null){
+            GlobalSettings.setTranslationThreads(translationThreads);
+        }
+        if(server != null){
+            GlobalSettings.server = server;
+        }
+        if(timeoutSeconds != null){
+            GlobalSettings.setRequestTimeout(Duration.ofSeconds(timeoutSeconds));
+        }
+        if(disableCache || cacheDirectory != null){
+            GlobalSettings.setCacheDirectory(cacheDirectory);
+        }
+    }
+
+    /**
+     * applies the settings of a batch to the global settings; unless the number of translation threads was given,
+     * the processors are divided over the files which are translated at the same time
+     * @param jobs the number of files which are translated at the same time
+     */
+    void applyBatchSettings(int jobs){
+        if(translationThreads == null){
+            GlobalSettings.setTranslationThreads(Math.max(1, Runtime.getRuntime().availableProcessors() / jobs));
+        }
+    }
+
+    /**
+     * creates the run parameters of a single input
+     * @return the run parameters
+     */
+    RunParameters createRunParameters(){
+        return new RunParameters(inputFileNames.get(0), protocolName, getOutputTargets(), fromLanguage, processingMode, dataOutFileName, outputLayout);
+    }
+
+    /**
+     * creates the run parameters of one of the files of a batch; the output file is placed in the output directory,
+     * if one was given
+     * @param inputFileName the file to translate
+     * @return the run parameters
+     */
+    RunParameters createRunParameters(String inputFileName){
+        RunParameters runParameters = new RunParameters(inputFileName, protocolName, getOutputTargets(), fromLanguage, processingMode, null, outputLayout);
+        if(dataOutFileName == null){
+            return runParameters;
+        }
+        Path outputFile = Path.of(dataOutFileName).resolve(Path.of(runParameters.getDataOutFileName()).getFileName());
+        return new RunParameters(inputFileName, protocolName, getOutputTargets(), fromLanguage, processingMode, outputFile.toString(), outputLayout);
+    }
+
+    /**
+     * returns the outputs: each combination of an output format type and output file type
+     * @return the outputs
+     */
+    private List<OutputTarget> getOutputTargets(){
+        List<OutputTarget> outputTargets = new ArrayList<>();
+        for(OutputFileType outputFileType : outputFileTypes){
+            for(OutputFormatType outputFormatType : outputFormatTypes){
+                outputTargets.add(new OutputTarget(outputFormatType, outputFileType));
+            }
+        }
+        return outputTargets;
+    }
+
+    /**
+     * returns whether several files are translated
+     * @return true/false
+     */
+    boolean isBatch(){
+        return inputFileNames.size() > 1 || listFile != null || (inputFileNames.size() == 1 && Files.isDirectory(Path.of(inputFileNames.get(0))));
+    }
+
+    /**
+     * returns the files of a batch: the input files, the data files in the input directories and the files in the
+     * list file, without duplicates
+     * @return the files to translate
+     */
+    List<String> getInputFileNames(){
+        Set<String> fileNames = new LinkedHashSet<>();
+        if(listFile != null){
+            try(Stream<String> lines = Files.lines(listFile)){
+                lines.map(String::trim).filter(line -> !line.isEmpty() && !line.startsWith("#")).forEach(fileNames::add);
+            } catch (IOException e){
+                throw new IllegalArgumentException("could not read the list file "+listFile+": "+e.getMessage());
+            }
+        }
+        for(String inputFileName : inputFileNames){
+            Path input = Path.of(inputFileName);
+            if(Files.isDirectory(input)){
+                fileNames.addAll(getDataFileNames(input));
+            }
+            else {
+                fileNames.add(inputFileName);
+            }
+        }
+        return new ArrayList<>(fileNames);
+    }
+
+    /**
+     * returns the number of files which are translated at the same time
+     * @param files the number of files in the batch
+     * @return the number of jobs
+     */
+    int getJobs(int files){
+        int maxJobs = jobs != null ? jobs : Runtime.getRuntime().availableProcessors();
+        return Math.max(1, Math.min(maxJobs, files));
+    }
+
+    /**
+     * returns the output directory of a batch
+     * @return the output directory, or null if the output files are written next to the input files
+     */
+    Path getOutputDirectory(){
+        return dataOutFileName == null ? null : Path.of(dataOutFileName);
+    }
+
+    /**
+     * returns whether the help text was asked for
+     * @return true/false
+     */
+    boolean isHelp(){
+        return help;
+    }
+
+    /**
+     * returns the processing mode that was asked for, which is not used when reading standard input
+     * @return the processing mode
+     */
+    ProcessingMode getProcessingMode(){
+        return processingMode;
+    }
+
+    /**
+     * returns the data files in a directory, sorted by name
+     * @param directory the directory
+     * @return the data files
+     */
+    private static List<String> getDataFileNames(Path directory){
+        try(Stream<Path> files = Files.list(directory)){
+            return files.filter(Files::isRegularFile)
+                    .filter(CommandLineArguments::isDataFile)
+                    .map(Path::toString)
+                    .sorted()
+                    .collect(Collectors.toList());
+        } catch (IOException e){
+            throw new IllegalArgumentException("could not read the directory "+directory+": "+e.getMessage());
+        }
+    }
+
+    /**
+     * returns whether a file in an input directory is a data file, based on its extension
+     * @param file the file
+     * @return true/false
+     */
+    private static boolean isDataFile(Path file){
+        String name = file.getFileName().toString().toLowerCase();
+        int extensionIndex = name.lastIndexOf('.');
+        if(extensionIndex < 0 || name.substring(0, extensionIndex).endsWith(outputFileSuffix) || name.startsWith(excelLockFilePrefix)){
+            return false;
+        }
+        return Arrays.stream(InputFileType.values()).anyMatch(inputFileType -> name.endsWith(inputFileType.getExtension()));
+    }
+
+    /**
+     * parses a positive number, such as the number of threads or jobs
+     * @param option the option
+     * @param value  the value to parse
+     * @return the number
+     */
+    private static int parseCount(String option, String value){
+        try {
+            int count = Integer.parseInt(value);
+            if(count > 0){
+                return count;
+            }
+        } catch (NumberFormatException e){
+            // handled below
+        }
+        throw new IllegalArgumentException("invalid value \""+value+"\" for "+option+"; expected a positive number");
+    }
+
+    /**
+     * parses the value of an enum option, accepting both the name and the pretty string of the enum constant
+     * @param option  the option
+     * @param value   the value to parse
+     * @param values  the constants of the enum
+     * @param getEnum function which returns the constant for a pretty string
+     * @param <E>     the enum
+     * @return the enum constant
+     */
+    private static <E extends Enum<E>> E parseEnum(String option, String value, E [] values, Function<String, E> getEnum){
+        for(E enumValue : values){
+            if(enumValue.name().equalsIgnoreCase(value)){
+                return enumValue;
+            }
+        }
+        E enumValue = getEnum.apply(value);
+        if(enumValue == null){
+            throw new IllegalArgumentException("invalid value \""+value+"\" for "+option+"; expected one of "+Arrays.toString(values));
+        }
+        return enumValue;
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2017 NKI/AvL; VUmc 2018/2019/2020
+ *
+ * This file is part of PALGA Protocol Data Translator.
+ *
+ * PALGA Protocol Data Translator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PALGA Protocol Data Translator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PALGA Protocol Data Translator. If not, see <http://www.gnu.org/licenses/>
+ */
+
+package palgadatatranslator.cli;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import palgadatatranslator.settings.RunParameters;
+import palgadatatranslator.utils.LogTracker;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * headless entry point, which translates a data file, or a batch of data files, without the user interface, e.g. for
+ * scheduled jobs
+ * no JavaFX classes are loaded: log4j is configured with log4j2-cli.xml, which logs to standard error instead of to
+ * the log window of the user interface
+ *
+ * once the run ends, a single line with the status, the number of rows and untranslated values and the time spent per
+ * step is written to standard error; a batch writes such a line for each file, followed by a line for the batch
+ * exit codes: 0 when the file(s) were translated, 1 when a translation failed, 2 when the arguments are invalid
+ */
+public class CommandLineTranslator {
+    static final int EXIT_OK = 0;
+    static final int EXIT_FAILED = 1;
+    static final int EXIT_INVALID_ARGUMENTS = 2;
+
+    // has to be set before the first logger is created, as the default configuration logs to the user interface
+    static {
+        if(System.getProperty("log4j2.configurationFile") == null && System.getProperty("log4j.configurationFile") == null) {
+            System.setProperty("log4j2.configurationFile", "log4j2-cli.xml");
+        }
+    }
+
+    private static final Logger logger = LogManager.getLogger(CommandLineTranslator.class.getName());
+
+    public static void main(String [] args) {
+        System.exit(run(args));
+    }
+
+    /**
+     * translates the data file(s) described by the command line arguments
+     * @param args the command line arguments
+     * @return the exit code
+     */
+    static int run(String [] args){
+        CommandLineArguments arguments;
+        try {
+            arguments = CommandLineArguments.parse(args);
+        } catch (IllegalArgumentException e){
+            System.err.println("error: "+e.getMessage());
+            System.err.println(CommandLineArguments.getUsage());
+            return EXIT_INVALID_ARGUMENTS;
+        }
+        if(arguments.isHelp()){
+            System.out.println(CommandLineArguments.getUsage());
+            return EXIT_OK;
+        }
+
+        arguments.applyGlobalSettings();
+        LogTracker.clearLog();
+        try {
+            return arguments.isBatch() ? runBatch(arguments) : runSingle(arguments);
+        } catch (IllegalArgumentException e){
+            System.err.println("error: "+e.getMessage());
+            return EXIT_INVALID_ARGUMENTS;
+        } finally {
+            LogTracker.logSummary();
+        }
+    }
+
+    /**
+     * translates a single data file
+     * @param arguments the command line arguments
+     * @return the exit code
+     */
+    private static int runSingle(CommandLineArguments arguments){
+        RunParameters runParameters = arguments.createRunParameters();
+        if(!runParameters.validSettings()){
+            return EXIT_INVALID_ARGUMENTS;
+        }
+        if(runParameters.getProcessingMode() != arguments.getProcessingMode()){
+            logger.log(Level.WARN, "Standard input can only be read once, so the data is kept in memory instead of streamed");
+        }
+        logger.log(Level.INFO, "Starting translation with the following settings:\n{}", runParameters.getSummaryString());
+
+        TranslationJob translationJob = new TranslationJob(runParameters);
+        boolean translated = translationJob.run();
+        if(translated){
+            logger.log(Level.INFO, "Finished translating {}", runParameters.getInputFileName());
+        }
+        System.err.println(translationJob.getSummary());
+        return translated ? EXIT_OK : EXIT_FAILED;
+    }
+
+    /**
+     * translates a batch of data files, sharing the codebooks between the files
+     * @param arguments the command line arguments
+     * @return the exit code
+     */
+    private static int runBatch(CommandLineArguments arguments){
+        List<RunParameters> runParametersList = new ArrayList<>();
+        for(String inputFileName : arguments.getInputFileNames()){
+            runParametersList.add(arguments.createRunParameters(inputFileName));
+        }
+        int jobs = arguments.getJobs(runParametersList.size());
+        arguments.applyBatchSettings(jobs);
+
+        BatchTranslator batchTranslator = new BatchTranslator(runParametersList, jobs);
+        if(!batchTranslator.validSettings(arguments.getOutputDirectory())){
+            return EXIT_INVALID_ARGUMENTS;
+        }
+        logger.log(Level.INFO, "Starting batch translation with the following settings:\n{}", runParametersList.get(0).getSummaryString());
+        try {
+            return batchTranslator.run() == 0 ? EXIT_OK : EXIT_FAILED;
+        } catch (RuntimeException e){
+            logger.log(Level.ERROR, "The batch translation failed: {}", e.getMessage());
+            return EXIT_FAILED;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2017 NKI/AvL; VUmc 2018/2019/2020
+ *
+ * This file is part of PALGA Protocol Data Translator.
+ *
+ * PALGA Protocol Data Translator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PALGA Protocol Data Translator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PALGA Protocol Data Translator. If not, see <http://www.gnu.org/licenses/>
+ */
+
+package palgadatatranslator.cli;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import palgadatatranslator.codebook.ProtocolCodebookManager;
+import palgadatatranslator.data.in.InputData;
+import palgadatatranslator.data.in.InputDataFactory;
+import palgadatatranslator.data.in.TranslationProgress;
+import palgadatatranslator.settings.RunParameters;
+
+/**
+ * translation of a single data file, which keeps track of the time spent in each step of the run, the number of
+ * rows and the number of values which could not be translated
+ */
+class TranslationJob {
+    private static final Logger logger = LogManager.getLogger(TranslationJob.class.getName());
+    // the progress ends up in the log, so it is reported less often than in the GUI
+    private static final long reportIntervalMillis = 5000;
+
+    private final RunParameters runParameters;
+    private final StringBuilder steps = new StringBuilder();
+    private long start;
+    private long stepStart;
+    private long end;
+    private int rows = 0;
+    private long untranslated = 0;
+    private String error;
+
+    /**
+     * new translation job
+     * @param runParameters the parameters of the run
+     */
+    TranslationJob(RunParameters runParameters){
+        this.runParameters = runParameters;
+    }
+
+    /**
+     * translates the data file and writes the output
+     * @return true if the file was translated, false if the translation failed
+     */
+    boolean run(){
+        start = System.nanoTime();
+        stepStart = start;
+        InputData inputData = null;
+        try {
+            ProtocolCodebookManager.createProtocolInfo(runParameters.getProtocolPrefix());
+            endStep("index_ms");
+            inputData = InputDataFactory.getInputData(runParameters, this::logProgress, reportIntervalMillis);
+            endStep("read_ms");
+            inputData.translate();
+            endStep("translate_ms");
+            inputData.writeOutput();
+            endStep("write_ms");
+        } catch (RuntimeException e){
+            error = e.getMessage();
+            logger.log(Level.ERROR, "The translation of {} failed: {}", runParameters.getInputFileName(), e.getMessage());
+        } finally {
+            if(inputData != null){
+                rows = inputData.getRowCount();
+                untranslated = inputData.getUntranslatedCellCount();
+            }
+            end = System.nanoTime();
+        }
+        return error == null;
+    }
+
+    /**
+     * logs the progress of the run
+     * @param progress the progress
+     */
+    private void logProgress(TranslationProgress progress){
+        logger.log(Level.INFO, "{}: {}", runParameters.getInputFileName(), progress);
+    }
+
+    /**
+     * ends the current step, which starts the next one
+     * @param name name of the step
+     */
+    private void endStep(String name){
+        long now = System.nanoTime();
+        steps.append(" ").append(name).append("=").append((now - stepStart) / 1000000);
+        stepStart = now;
+    }
+
+    /**
+     * returns the parameters of the run
+     * @return the parameters of the run
+     */
+    RunParameters getRunParameters(){
+        return runParameters;
+    }
+
+    /**
+     * returns whether the translation failed
+     * @return true/false
+     */
+    boolean isFailed(){
+        return error != null;
+    }
+
+    /**
+     * returns a summary of the run, with the status, the number of rows and untranslated values and the time of
+     * each finished step in milliseconds
+     * @return the summary, as key=value pairs
+     */
+    String getSummary(){
+        return "status="+(isFailed() ? "failed" : "ok")+" rows="+rows+" untranslated="+untranslated+steps+" total_ms="+(end - start) / 1000000;
+    }
+}
@@ -0,0 +1,368 @@
+/*
+ * Copyright 2017 NKI/AvL; VUmc 2018/2019/2020
+ *
+ * This file is part of PALGA Protocol Data Translator.
+ *
+ * PALGA Protocol Data Translator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PALGA Protocol Data Translator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PALGA Protocol Data Translator. If not, see <http://www.gnu.org/licenses/>
+ */
+package palgadatatranslator.codebook;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import palgadatatranslator.utils.enumerate.OutputFormatType;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * binary cache of a parsed codebook, so the xml doesn't have to be parsed again on every start
+ *
+ * The snapshot starts with a header: a magic number, the format version, the number of output format types,
+ * a validator of the xml the codebook was parsed from, the length of the payload and its CRC32 checksum. If any
+ * of these doesn't match, the snapshot is considered stale and the codebook is parsed from the xml again.
+ * The payload contains a table of all distinct strings, followed by the concepts (including their pre-rendered
+ * translations) and the two maps of the codebook, which refer to the strings and concepts by their index.
+ *
+ * The snapshot is read completely and decoded into the same concepts and maps that parsing the xml creates, so a
+ * codebook takes as much memory as a parsed one; the snapshot only saves the time of parsing and rendering.
+ */
+class CodebookSnapshot {
+    private static final Logger logger = LogManager.getLogger(CodebookSnapshot.class.getName());
+    private static final int MAGIC = 0x50445443;
+    // increase when the layout of the payload changes
+    private static final int FORMAT_VERSION = 1;
+    private static final int OUTPUT_FORMAT_TYPES = OutputFormatType.values().length;
+
+    private final Map<String, Concept> palgaColNameToConceptMap;
+    private final Map<String, Concept> idToConceptMap;
+
+    /**
+     * new snapshot for the maps of a codebook
+     * @param palgaColNameToConceptMap map from PALGA column name to concept
+     * @param idToConceptMap           map from art-decor identifier to concept
+     */
+    CodebookSnapshot(Map<String, Concept> palgaColNameToConceptMap, Map<String, Concept> idToConceptMap) {
+        this.palgaColNameToConceptMap = palgaColNameToConceptMap;
+        this.idToConceptMap = idToConceptMap;
+    }
+
+    /**
+     * returns a validator for the xml a codebook is parsed from, which changes whenever the file is replaced
+     * @param sourceFile the xml file
+     * @return the validator
+     * @throws IOException when the attributes of the file cannot be read
+     */
+    static String getSourceValidator(Path sourceFile) throws IOException {
+        return Files.size(sourceFile) + "@" + Files.getLastModifiedTime(sourceFile).toMillis();
+    }
+
+    /**
+     * attempts to read the snapshot, adding its concepts to the maps of the codebook
+     * the maps are only changed if the complete snapshot could be read
+     * @param snapshotFile    the snapshot file
+     * @param sourceValidator validator of the xml the codebook should be parsed from
+     * @return true if the snapshot was read; false if it doesn't exist, is stale or is damaged
+     */
+    boolean read(Path snapshotFile, String sourceValidator) {
+        if(!Files.exists(snapshotFile)) {
+            return false;
+        }
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(snapshotFile));
+            if(buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION || buffer.getInt() != OUTPUT_FORMAT_TYPES) {
+                logger.log(Level.DEBUG, "Snapshot {} has a different format; it will be rebuilt", snapshotFile);
+                return false;
+            }
+            if(!sourceValidator.equals(readUtf8(buffer))) {
+                logger.log(Level.DEBUG, "Snapshot {} is stale; it will be rebuilt", snapshotFile);
+                return false;
+            }
+            int payloadLength = buffer.getInt();
+            long checksum = buffer.getLong();
+            if(payloadLength != buffer.remaining() || checksum != getChecksum(buffer.slice())) {
+                logger.log(Level.WARN, "Snapshot {} is damaged; it will be rebuilt", snapshotFile);
+                return false;
+            }
+            readPayload(new SnapshotReader(buffer));
+            return true;
+        } catch (IOException | BufferUnderflowException | IndexOutOfBoundsException e) {
+            logger.log(Level.WARN, "Snapshot {} could not be read ({}); it will be rebuilt", snapshotFile, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * writes the snapshot, replacing the file at once so readers never see a partial snapshot
+     * @param snapshotFile    the snapshot file
+     * @param sourceValidator validator of the xml the codebook was parsed from
+     * @throws IOException when the snapshot cannot be written
+     */
+    void write(Path snapshotFile, String sourceValidator) throws IOException {
+        SnapshotWriter snapshotWriter = new SnapshotWriter();
+        writePayload(snapshotWriter);
+        byte[] payload = snapshotWriter.toByteArray();
+
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream(payload.length + 64);
+        DataOutputStream dataOutputStream = new DataOutputStream(byteArrayOutputStream);
+        dataOutputStream.writeInt(MAGIC);
+        dataOutputStream.writeInt(FORMAT_VERSION);
+        dataOutputStream.writeInt(OUTPUT_FORMAT_TYPES);
+        byte[] validator = sourceValidator.getBytes(StandardCharsets.UTF_8);
+        dataOutputStream.writeInt(validator.length);
+        dataOutputStream.write(validator);
+        dataOutputStream.writeInt(payload.length);
+        dataOutputStream.writeLong(getChecksum(ByteBuffer.wrap(payload)));
+        dataOutputStream.write(payload);
+        dataOutputStream.flush();
+
+        Path tempFile = Files.createTempFile(snapshotFile.getParent(), snapshotFile.getFileName().toString(), ".tmp");
+        try {
+            Files.write(tempFile, byteArrayOutputStream.toByteArray());
+            Files.move(tempFile, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    /**
+     * writes the concepts and the maps of the codebook
+     * @param snapshotWriter writer for the payload
+     */
+    private void writePayload(SnapshotWriter snapshotWriter) {
+        // a concept may be in both maps (and in the id map only, if its column name was used again), so each
+        // distinct concept is written once and referred to by its index
+        Map<Concept, Integer> conceptIndices = new IdentityHashMap<>();
+        List<Concept> concepts = new ArrayList<>();
+        for(Concept concept : palgaColNameToConceptMap.values()) {
+            conceptIndices.computeIfAbsent(concept, c -> {concepts.add(c); return concepts.size() - 1;});
+        }
+        for(Concept concept : idToConceptMap.values()) {
+            conceptIndices.computeIfAbsent(concept, c -> {concepts.add(c); return concepts.size() - 1;});
+        }
+
+        snapshotWriter.writeInt(concepts.size());
+        for(Concept concept : concepts) {
+            concept.writeSnapshot(snapshotWriter);
+        }
+        writeConceptMap(snapshotWriter, palgaColNameToConceptMap, conceptIndices);
+        writeConceptMap(snapshotWriter, idToConceptMap, conceptIndices);
+    }
+
+    /**
+     * reads the concepts and the maps of the codebook
+     * @param snapshotReader reader for the payload
+     */
+    private void readPayload(SnapshotReader snapshotReader) {
+        Concept[] concepts = new Concept[snapshotReader.readInt()];
+        for(int i = 0; i < concepts.length; i++) {
+            concepts[i] = Concept.readSnapshot(snapshotReader);
+        }
+        Map<String, Concept> palgaColNames = readConceptMap(snapshotReader, concepts);
+        Map<String, Concept> ids = readConceptMap(snapshotReader, concepts);
+        palgaColNameToConceptMap.putAll(palgaColNames);
+        idToConceptMap.putAll(ids);
+    }
+
+    /**
+     * writes a map of the codebook as pairs of key and concept index
+     * @param snapshotWriter writer for the payload
+     * @param conceptMap     the map to write
+     * @param conceptIndices the index of each concept
+     */
+    private static void writeConceptMap(SnapshotWriter snapshotWriter, Map<String, Concept> conceptMap, Map<Concept, Integer> conceptIndices) {
+        snapshotWriter.writeInt(conceptMap.size());
+        for(Map.Entry<String, Concept> entry : conceptMap.entrySet()) {
+            snapshotWriter.writeString(entry.getKey());
+            snapshotWriter.writeInt(conceptIndices.get(entry.getValue()));
+        }
+    }
+
+    /**
+     * reads a map of the codebook, keeping the order in which it was written
+     * @param snapshotReader reader for the payload
+     * @param concepts       the concepts of the snapshot
+     * @return the map
+     */
+    private static Map<String, Concept> readConceptMap(SnapshotReader snapshotReader, Concept[] concepts) {
+        int size = snapshotReader.readInt();
+        Map<String, Concept> conceptMap = new LinkedHashMap<>();
+        for(int i = 0; i < size; i++) {
+            conceptMap.put(snapshotReader.readString(), concepts[snapshotReader.readInt()]);
+        }
+        return conceptMap;
+    }
+
+    /**
+     * reads a length-prefixed UTF-8 string
+     * @param buffer buffer positioned at the string
+     * @return the string
+     */
+    private static String readUtf8(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * returns the CRC32 checksum of the remaining bytes of a buffer
+     * @param buffer the buffer
+     * @return the checksum
+     */
+    private static long getChecksum(ByteBuffer buffer) {
+        CRC32 crc32 = new CRC32();
+        crc32.update(buffer);
+        return crc32.getValue();
+    }
+
+    /**
+     * writes the payload of a snapshot; strings are collected in a table and written as their index in the table,
+     * so every distinct string is stored only once
+     */
+    static class SnapshotWriter {
+        private final Map<String, Integer> stringIndices = new HashMap<>();
+        private final List<String> strings = new ArrayList<>();
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        private final DataOutputStream bodyOutputStream = new DataOutputStream(body);
+
+        /**
+         * writes an int
+         * @param value the int
+         */
+        void writeInt(int value) {
+            try {
+                bodyOutputStream.writeInt(value);
+            } catch (IOException e) {
+                throw new RuntimeException("A fatal error occurred while writing a codebook snapshot: "+e.getMessage());
+            }
+        }
+
+        /**
+         * writes a boolean
+         * @param value the boolean
+         */
+        void writeBoolean(boolean value) {
+            writeInt(value ? 1 : 0);
+        }
+
+        /**
+         * writes a string, which may be null
+         * @param value the string
+         */
+        void writeString(String value) {
+            if(value == null) {
+                writeInt(-1);
+            }
+            else {
+                writeInt(stringIndices.computeIfAbsent(value, s -> {strings.add(s); return strings.size() - 1;}));
+            }
+        }
+
+        /**
+         * writes an array of strings
+         * @param values the strings
+         */
+        void writeStrings(String[] values) {
+            writeInt(values.length);
+            for(String value : values) {
+                writeString(value);
+            }
+        }
+
+        /**
+         * returns the payload: the string table followed by the written data
+         * @return the payload
+         */
+        private byte[] toByteArray() throws IOException {
+            ByteArrayOutputStream payload = new ByteArrayOutputStream(body.size() + strings.size() * 16);
+            DataOutputStream payloadOutputStream = new DataOutputStream(payload);
+            payloadOutputStream.writeInt(strings.size());
+            for(String string : strings) {
+                byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+                payloadOutputStream.writeInt(bytes.length);
+                payloadOutputStream.write(bytes);
+            }
+            bodyOutputStream.flush();
+            body.writeTo(payloadOutputStream);
+            payloadOutputStream.flush();
+            return payload.toByteArray();
+        }
+    }
+
+    /**
+     * reads the payload of a snapshot, starting with the string table
+     */
+    static class SnapshotReader {
+        private final ByteBuffer buffer;
+        private final String[] strings;
+
+        /**
+         * new reader, which reads the string table right away
+         * @param buffer buffer positioned at the start of the payload
+         */
+        private SnapshotReader(ByteBuffer buffer) {
+            this.buffer = buffer;
+            strings = new String[buffer.getInt()];
+            for(int i = 0; i < strings.length; i++) {
+                strings[i] = readUtf8(buffer);
+            }
+        }
+
+        /**
+         * reads an int
+         * @return the int
+         */
+        int readInt() {
+            return buffer.getInt();
+        }
+
+        /**
+         * reads a boolean
+         * @return the boolean
+         */
+        boolean readBoolean() {
+            return buffer.getInt() != 0;
+        }
+
+        /**
+         * reads a string, which may be null
+         * @return the string
+         */
+        String readString() {
+            int index = buffer.getInt();
+            return index == -1 ? null : strings[index];
+        }
+
+        /**
+         * reads an array of strings
+         * @return the strings
+         */
+        String[] readStrings() {
+            String[] values = new String[buffer.getInt()];
+            for(int i = 0; i < values.length; i++) {
+                values[i] = readString();
+            }
+            return values;
+        }
+    }
+}
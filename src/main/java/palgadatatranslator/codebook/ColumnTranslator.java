@@ -0,0 +1,233 @@
+/*
+ * Copyright 2017 NKI/AvL; VUmc 2018/2019/2020
+ *
+ * This file is part of PALGA Protocol Data Translator.
+ *
+ * PALGA Protocol Data Translator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PALGA Protocol Data Translator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PALGA Protocol Data Translator. If not, see <http://www.gnu.org/licenses/>
+ */
+package palgadatatranslator.codebook;
+
+import palgadatatranslator.utils.enumerate.OutputFormatType;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * translates the values of a single column of the data file
+ * the concept belonging to the column is looked up once, after which translating a value only requires a lookup
+ * in the value list of the concept
+ *
+ * housekeeping columns have a single codebook and hence a single concept. Protocol columns can use a different
+ * codebook version on each line, so these keep a concept per version. The versions are identified by a version slot,
+ * which the caller assigns once per line, so the concept can be retrieved using an array index
+ *
+ * a translator is shared by the translation threads; a version is resolved by the first thread that needs it
+ *
+ * translations of concepts with a value list are remembered per version in the translation memo, together with whether
+ * the value could be translated, so the untranslated values can be counted without looking them up again
+ *
+ * values which could not be translated are recorded in the untranslated value report, which counts the cells of each
+ * (column, version, value), so a missing value costs a map lookup per cell instead of a log message
+ *
+ * a run can have several outputs, each with its own output format type. A value is translated once for all of them:
+ * the memo remembers the translations of a value for all outputs, indexed by output
+ */
+public class ColumnTranslator {
+    private final String headerName;
+    // the format type of each output
+    private final OutputFormatType[] outputTypes;
+    private final TranslationMemo translationMemo;
+    private final UntranslatedValueReport untranslatedValueReport;
+    // null for housekeeping columns
+    private final ProtocolCodebookManager protocolCodebookManager;
+
+    // codebook and concept for each version slot, null while the version has not been resolved yet
+    private final AtomicReferenceArray<ResolvedConcept> resolvedConcepts;
+    // non-empty values which were written as they are, as their concept or value is not in the codebook
+    private final LongAdder untranslatedValues = new LongAdder();
+
+    /**
+     * create a translator for a housekeeping column
+     * @param headerName the headerName of the column
+     * @param codebook        the housekeeping codebook, which contains the headerName
+     * @param outputTypes     the format type to use for each output
+     * @param translationMemo memo for the translated values
+     * @param untranslatedValueReport report of the values which could not be translated
+     */
+    ColumnTranslator(String headerName, DecorCodebook codebook, OutputFormatType[] outputTypes, TranslationMemo translationMemo, UntranslatedValueReport untranslatedValueReport) {
+        this.headerName = headerName;
+        this.outputTypes = outputTypes;
+        this.translationMemo = translationMemo;
+        this.untranslatedValueReport = untranslatedValueReport;
+        this.protocolCodebookManager = null;
+        this.resolvedConcepts = new AtomicReferenceArray<>(new ResolvedConcept[]{new ResolvedConcept(codebook, codebook.getConcept(headerName))});
+    }
+
+    /**
+     * create a translator for a protocol column
+     * @param headerName              the headerName of the column, without roman number
+     * @param protocolCodebookManager the manager which provides the codebook versions
+     * @param versionCount            the number of version slots
+     * @param outputTypes             the format type to use for each output
+     * @param translationMemo         memo for the translated values
+     * @param untranslatedValueReport report of the values which could not be translated
+     */
+    ColumnTranslator(String headerName, ProtocolCodebookManager protocolCodebookManager, int versionCount, OutputFormatType[] outputTypes, TranslationMemo translationMemo, UntranslatedValueReport untranslatedValueReport) {
+        this.headerName = headerName;
+        this.outputTypes = outputTypes;
+        this.translationMemo = translationMemo;
+        this.untranslatedValueReport = untranslatedValueReport;
+        this.protocolCodebookManager = protocolCodebookManager;
+        this.resolvedConcepts = new AtomicReferenceArray<>(versionCount);
+    }
+
+    /**
+     * translate a value of this column for all outputs
+     * the returned array is shared with the memo and other threads, so it must not be changed
+     * @param value       the value to translate
+     * @param version     the codebook version of the line
+     * @param versionSlot the slot assigned to the version
+     * @return the translated value for each output, or null if the value is written as it is to all outputs
+     */
+    public String[] translateValue(String value, String version, int versionSlot) {
+        return translateValue(value, version, versionSlot, 1);
+    }
+
+    /**
+     * translate a value of this column for all outputs, for a number of cells which contain the value
+     * this allows translating each distinct value once, while the untranslated values are still counted per cell
+     * the returned array is shared with the memo and other threads, so it must not be changed
+     * @param value       the value to translate
+     * @param version     the codebook version of the lines
+     * @param versionSlot the slot assigned to the version
+     * @param cells       the number of cells which contain the value
+     * @return the translated value for each output, or null if the value is written as it is to all outputs
+     */
+    public String[] translateValue(String value, String version, int versionSlot, int cells) {
+        if(value.equalsIgnoreCase("")) {
+            return null;
+        }
+        ResolvedConcept resolvedConcept = resolvedConcepts.get(protocolCodebookManager == null ? 0 : versionSlot);
+        if(resolvedConcept == null) {
+            resolvedConcept = resolve(version, versionSlot);
+        }
+        if(resolvedConcept.concept == null) {
+            untranslatedValues.add(cells);
+            return null;
+        }
+        // values of concepts without a value list are written as they are
+        if(resolvedConcept.memo == null) {
+            return null;
+        }
+        TranslatedValue translatedValue = translationMemo.translate(resolvedConcept.memo, value, resolvedConcept::translateValue);
+        if(!translatedValue.translated) {
+            untranslatedValues.add(cells);
+            untranslatedValueReport.record(headerName, resolvedConcept.codebook.getVersion(), value, cells);
+        }
+        return translatedValue.values;
+    }
+
+    /**
+     * returns the number of non-empty values which could not be translated, as their concept or value is not in
+     * the codebook
+     * @return the number of untranslated values
+     */
+    public long getUntranslatedValues() {
+        return untranslatedValues.sum();
+    }
+
+    /**
+     * looks up the codebook and the concept for a version
+     * @param version     the codebook version
+     * @param versionSlot the slot assigned to the version
+     * @return the codebook and concept for the version; the concept is null if it cannot be translated
+     */
+    private ResolvedConcept resolve(String version, int versionSlot) {
+        // resolving twice yields the same result, so threads which race here don't need to wait for each other
+        DecorCodebook decorCodebook = protocolCodebookManager.getCodebook(version);
+        ResolvedConcept resolvedConcept = new ResolvedConcept(null, null);
+        if(decorCodebook != null) {
+            Concept concept = decorCodebook.getConcept(headerName);
+            if(concept == null) {
+                decorCodebook.reportMissingHeaderName(headerName);
+            }
+            else {
+                resolvedConcept = new ResolvedConcept(decorCodebook, concept);
+            }
+        }
+        resolvedConcepts.set(versionSlot, resolvedConcept);
+        return resolvedConcept;
+    }
+
+    /**
+     * the codebook and concept of a column for one version, as well as the memo for the translated values
+     */
+    private class ResolvedConcept {
+        private final DecorCodebook codebook;
+        private final Concept concept;
+        // null when the values of the concept are not translated
+        private final Map<String, TranslatedValue> memo;
+
+        /**
+         * new resolved concept
+         * @param codebook the codebook version
+         * @param concept  the concept in the codebook
+         */
+        private ResolvedConcept(DecorCodebook codebook, Concept concept) {
+            this.codebook = codebook;
+            this.concept = concept;
+            this.memo = concept != null && concept.hasConceptListItems() ? new ConcurrentHashMap<>() : null;
+        }
+
+        /**
+         * translate a value for all outputs using the codebook
+         * @param value the value to translate
+         * @return translated value
+         */
+        private TranslatedValue translateValue(String value) {
+            String[] values = new String[outputTypes.length];
+            if(!concept.containsValue(value)) {
+                Arrays.fill(values, value);
+                return new TranslatedValue(values, false);
+            }
+            for(int i=0; i<outputTypes.length; i++) {
+                values[i] = codebook.translateConceptValue(outputTypes[i], value, concept);
+            }
+            return new TranslatedValue(values, true);
+        }
+    }
+
+    /**
+     * a translated value as it is remembered in the memo
+     */
+    private static class TranslatedValue {
+        // indexed by output
+        private final String[] values;
+        // false if the value is not in the value list, in which case the original value is used
+        private final boolean translated;
+
+        /**
+         * new translated value
+         * @param values     the translated value for each output, or the original value if it could not be translated
+         * @param translated whether the value could be translated
+         */
+        private TranslatedValue(String[] values, boolean translated) {
+            this.values = values;
+            this.translated = translated;
+        }
+    }
+}
@@ -29,13 +29,23 @@ import java.util.Map;
  * Each PALGA Concept in the codebook is stored in one Concept object
  * Concepts can contain valueLists (stores values and their mappings to e.g. SNOMED codes) and terminology
  * (stores the e.g. SNOMED code for this concept)
+ *
+ * the translations of a value or of the concept itself are rendered for every output format type as soon as it is
+ * added, so translating a value only requires reading the translation from an array, and a concept never holds a
+ * translation which has not been rendered
+ * concepts are only changed while their codebook is loaded; afterwards they are only read
  */
 class Concept {
+    private static final OutputFormatType[] outputFormatTypes = OutputFormatType.values();
+
     private Map<String, ConceptListItem> valuesMap = new HashMap<>();
     private ConceptTerminology conceptTerminology;
     private String conceptId;
     private boolean hasConceptListItems=false;
     private String palgaColName;
+    // time spent rendering the translations of the concept and its values, which is reported as the load time cost
+    // of rendering them; concepts read from a snapshot don't render their translations
+    private long renderNanos;
 
     /**
      * create a new Concept
@@ -57,29 +67,129 @@ class Concept {
 
     /**
      * attempts to translate a value, returning it in the desired output format
+     * a value which is not in the value list is not an error here, as it occurs for every cell with that value; the
+     * caller decides how to report it
      * @param value the value to translate
      * @param type  the outputformat type
-     * @return  a translated value or the original value
-     * @throws Exception
+     * @return  a translated value, the original value if the concept has no value list, or null if the value is not
+     *          in the value list
      */
-    String translateValue(String value, OutputFormatType type) throws Exception{
+    String translateValue(String value, OutputFormatType type) {
         if(!hasConceptListItems || value.equalsIgnoreCase("")) {
             return value;
         }
-        if(!valuesMap.containsKey(value)){
-            throw new Exception("value \""+value+"\" ("+palgaColName+") doesn't seem to exist.");
-        }
-        return valuesMap.get(value).getTranslation(type);
+        ConceptListItem conceptListItem = valuesMap.get(value);
+        return conceptListItem == null ? null : conceptListItem.getTranslation(type);
+    }
+
+    /**
+     * returns whether a value is in the value list of the concept
+     * @param value the value as it appears in the PALGA exports
+     * @return true/false
+     */
+    boolean containsValue(String value) {
+        return valuesMap.containsKey(value);
+    }
+
+    /**
+     * returns whether the concept has a list of values, which means its values can be translated
+     * @return true/false
+     */
+    boolean hasConceptListItems() {
+        return hasConceptListItems;
     }
 
     /**
      * attempts to translate the header
      * @param outputType the output format type
-     * @return  translated header
-     * @throws Exception
+     * @return  translated header, or null if the concept has no terminology
+     */
+    String translateHeaderName(OutputFormatType outputType) {
+        return conceptTerminology == null ? null : conceptTerminology.getTranslation(outputType);
+    }
+
+    /**
+     * returns the number of rendered translations of the concept and its values
+     * @return the number of rendered translations
+     */
+    int getTranslationCount() {
+        return ((conceptTerminology == null ? 0 : 1) + valuesMap.size()) * outputFormatTypes.length;
+    }
+
+    /**
+     * returns the time spent rendering the translations of the concept and its values
+     * @return the time in nanoseconds
+     */
+    long getRenderNanos() {
+        return renderNanos;
+    }
+
+    /**
+     * returns the translations for all output format types, indexed by the ordinal of the output format type
+     * @param code        code of the concept or value
+     * @param codeSystem  codesystem the code belongs to
+     * @param displayName textual representation of the code
+     * @return the translations
+     */
+    private static String[] renderTranslations(String code, String codeSystem, String displayName) {
+        String[] translations = new String[outputFormatTypes.length];
+        for(OutputFormatType type : outputFormatTypes) {
+            translations[type.ordinal()] = switch (type) {
+                case CODES -> code;
+                case CODES_AND_DESCRIPTIONS -> code + ":" + displayName;
+                case CODESYSTEM_AND_CODES -> codeSystem + ":" + code;
+                case DESCRIPTIONS -> displayName;
+                case CODESYSTEM_AND_CODES_AND_DESCRIPTIONS ->
+                        codeSystem + ":" + code + ":" + displayName;
+            };
+        }
+        return translations;
+    }
+
+    /**
+     * writes the concept, including its pre-rendered translations, to a codebook snapshot
+     * @param snapshotWriter writer for the snapshot
+     */
+    void writeSnapshot(CodebookSnapshot.SnapshotWriter snapshotWriter) {
+        snapshotWriter.writeString(conceptId);
+        snapshotWriter.writeString(palgaColName);
+        snapshotWriter.writeBoolean(hasConceptListItems);
+        snapshotWriter.writeBoolean(conceptTerminology != null);
+        if(conceptTerminology != null) {
+            snapshotWriter.writeString(conceptTerminology.conceptCode);
+            snapshotWriter.writeString(conceptTerminology.conceptCodeSystem);
+            snapshotWriter.writeString(conceptTerminology.conceptDisplayName);
+            snapshotWriter.writeStrings(conceptTerminology.translations);
+        }
+        snapshotWriter.writeInt(valuesMap.size());
+        for(Map.Entry<String, ConceptListItem> entry : valuesMap.entrySet()) {
+            ConceptListItem conceptListItem = entry.getValue();
+            snapshotWriter.writeString(entry.getKey());
+            snapshotWriter.writeString(conceptListItem.valueCode);
+            snapshotWriter.writeString(conceptListItem.valueCodeSystem);
+            snapshotWriter.writeString(conceptListItem.valueDisplayName);
+            snapshotWriter.writeStrings(conceptListItem.translations);
+        }
+    }
+
+    /**
+     * reads a concept from a codebook snapshot; its translations are already rendered
+     * @param snapshotReader reader for the snapshot
+     * @return the concept
      */
-    String translateHeaderName(OutputFormatType outputType) throws Exception {
-        return conceptTerminology.getTranslation(outputType);
+    static Concept readSnapshot(CodebookSnapshot.SnapshotReader snapshotReader) {
+        Concept concept = new Concept(snapshotReader.readString(), snapshotReader.readString());
+        concept.hasConceptListItems = snapshotReader.readBoolean();
+        if(snapshotReader.readBoolean()) {
+            concept.conceptTerminology = new ConceptTerminology(snapshotReader.readString(), snapshotReader.readString(), snapshotReader.readString(), snapshotReader.readStrings());
+        }
+        int values = snapshotReader.readInt();
+        concept.valuesMap = new HashMap<>(values * 4 / 3 + 1);
+        for(int i = 0; i < values; i++) {
+            String value = snapshotReader.readString();
+            concept.valuesMap.put(value, new ConceptListItem(snapshotReader.readString(), snapshotReader.readString(), snapshotReader.readString(), snapshotReader.readStrings()));
+        }
+        return concept;
     }
 
     /**
@@ -92,7 +202,10 @@ class Concept {
      */
     void addConceptListItem(String valueCode, String valueCodeSystem, String valueDisplayName, String value) {
         hasConceptListItems = true;
-        valuesMap.put(value, new ConceptListItem(valueCode, valueCodeSystem, valueDisplayName));
+        long start = System.nanoTime();
+        ConceptListItem conceptListItem = new ConceptListItem(valueCode, valueCodeSystem, valueDisplayName);
+        renderNanos += System.nanoTime() - start;
+        valuesMap.put(value, conceptListItem);
     }
 
     /**
@@ -102,7 +215,9 @@ class Concept {
      * @param displayName    textual representation of the code
      */
     void addConceptTerminology(String conceptCode, String codeSystemName, String displayName) {
+        long start = System.nanoTime();
         conceptTerminology = new ConceptTerminology(conceptCode, codeSystemName, displayName);
+        renderNanos += System.nanoTime() - start;
     }
 
     /**
@@ -112,35 +227,39 @@ class Concept {
         private final String valueCode;
         private final String valueCodeSystem;
         private final String valueDisplayName;
+        private final String[] translations;
 
         /**
-         * new conceptlistitem
+         * new conceptlistitem, rendering its translations for all output format types
          * @param valueCode        code of the value
          * @param valueCodeSystem  codesystem of the value
          * @param valueDisplayName textual representation of the value
          */
         private ConceptListItem(String valueCode, String valueCodeSystem, String valueDisplayName) {
+            this(valueCode, valueCodeSystem, valueDisplayName, Concept.renderTranslations(valueCode, valueCodeSystem, valueDisplayName));
+        }
+
+        /**
+         * new conceptlistitem with translations which have already been rendered
+         * @param valueCode        code of the value
+         * @param valueCodeSystem  codesystem of the value
+         * @param valueDisplayName textual representation of the value
+         * @param translations     the translations, indexed by the ordinal of the output format type
+         */
+        private ConceptListItem(String valueCode, String valueCodeSystem, String valueDisplayName, String[] translations) {
             this.valueCode = valueCode;
             this.valueCodeSystem = valueCodeSystem;
             this.valueDisplayName = valueDisplayName;
+            this.translations = translations;
         }
 
         /**
          * returns the translation, based on the output format type
          * @param type output format type
          * @return  translated value
-         * @throws Exception
          */
-        private String getTranslation(OutputFormatType type) throws Exception{
-            return switch (type) {
-                case CODES -> valueCode;
-                case CODES_AND_DESCRIPTIONS -> valueCode + ":" + valueDisplayName;
-                case CODESYSTEM_AND_CODES -> valueCodeSystem + ":" + valueCode;
-                case DESCRIPTIONS -> valueDisplayName;
-                case CODESYSTEM_AND_CODES_AND_DESCRIPTIONS ->
-                        valueCodeSystem + ":" + valueCode + ":" + valueDisplayName;
-                default -> throw new Exception("type " + type + " does not exist");
-            };
+        private String getTranslation(OutputFormatType type) {
+            return translations[type.ordinal()];
         }
 
     }
@@ -153,35 +272,39 @@ class Concept {
         private final String conceptCode;
         private final String conceptCodeSystem;
         private final String conceptDisplayName;
+        private final String[] translations;
 
         /**
-         * new terminology
+         * new terminology, rendering its translations for all output format types
          * @param conceptCode       code of the concept
          * @param conceptCodeSystem codesystem of the concept
          * @param displayName       textual representation of the concept
          */
         private ConceptTerminology(String conceptCode, String conceptCodeSystem, String displayName) {
+            this(conceptCode, conceptCodeSystem, displayName, Concept.renderTranslations(conceptCode, conceptCodeSystem, displayName));
+        }
+
+        /**
+         * new terminology with translations which have already been rendered
+         * @param conceptCode       code of the concept
+         * @param conceptCodeSystem codesystem of the concept
+         * @param displayName       textual representation of the concept
+         * @param translations      the translations, indexed by the ordinal of the output format type
+         */
+        private ConceptTerminology(String conceptCode, String conceptCodeSystem, String displayName, String[] translations) {
             this.conceptCode = conceptCode;
             this.conceptCodeSystem = conceptCodeSystem;
             this.conceptDisplayName = displayName;
+            this.translations = translations;
         }
 
         /**
          * returns the translation, based on the output format type
          * @param type output format type
          * @return  translated value
-         * @throws Exception
          */
-        private String getTranslation(OutputFormatType type) throws Exception{
-            return switch (type) {
-                case CODES -> conceptCode;
-                case CODES_AND_DESCRIPTIONS -> conceptCode + ":" + conceptDisplayName;
-                case CODESYSTEM_AND_CODES -> conceptCodeSystem + ":" + conceptCode;
-                case DESCRIPTIONS -> conceptDisplayName;
-                case CODESYSTEM_AND_CODES_AND_DESCRIPTIONS ->
-                        conceptCodeSystem + ":" + conceptCode + ":" + conceptDisplayName;
-                default -> throw new Exception("type " + type + " does not exist");
-            };
+        private String getTranslation(OutputFormatType type) {
+            return translations[type.ordinal()];
         }
     }
 }
@@ -0,0 +1,331 @@
+/*
+ * Copyright 2017 NKI/AvL; VUmc 2018/2019/2020
+ *
+ * This file is part of PALGA Protocol Data Translator.
+ *
+ * PALGA Protocol Data Translator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PALGA Protocol Data Translator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PALGA Protocol Data Translator. If not, see <http://www.gnu.org/licenses/>
+ */
+
+package palgadatatranslator.codebook;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.util.*;
+
+/**
+ * parser for the art-decor dataset of a codebook, which adds the concepts of the dataset to the maps of the codebook
+ *
+ * The codebook is read with a streaming (StAX) parser, so the dataset is never kept in memory as a whole. While
+ * parsing, a stack holds a frame for each open element; the frames of the concepts collect the information
+ * required to create the Concept once the concept element ends. As nested concepts end before their group does,
+ * concepts are added in the same order as when walking the document tree depth first.
+ */
+class DecorCodebookParser {
+    private final Map<String, Concept> palgaColNameToConceptMap;
+    private final Map<String, Concept> idToConceptMap;
+
+    /**
+     * new parser
+     * @param palgaColNameToConceptMap map to which the concepts are added by PALGA column name
+     * @param idToConceptMap           map to which the concepts are added by art-decor identifier
+     */
+    DecorCodebookParser(Map<String, Concept> palgaColNameToConceptMap, Map<String, Concept> idToConceptMap){
+        this.palgaColNameToConceptMap = palgaColNameToConceptMap;
+        this.idToConceptMap = idToConceptMap;
+    }
+
+    /**
+     * parses the codebook, creating the concepts as their elements end
+     * @param xmlStreamReader reader positioned at the start of the document
+     * @throws XMLStreamException when the xml cannot be read
+     */
+    void parse(XMLStreamReader xmlStreamReader) throws XMLStreamException {
+        Deque<ElementFrame> elementFrames = new ArrayDeque<>();
+        // the PALGA_COLNAME property whose text is being read
+        ElementFrame propertyFrame = null;
+
+        while(xmlStreamReader.hasNext()){
+            switch (xmlStreamReader.next()) {
+                case XMLStreamConstants.START_ELEMENT -> {
+                    ElementFrame elementFrame = createElementFrame(xmlStreamReader, elementFrames.peek());
+                    if(elementFrame.text != null){
+                        propertyFrame = elementFrame;
+                    }
+                    elementFrames.push(elementFrame);
+                }
+                case XMLStreamConstants.CHARACTERS, XMLStreamConstants.CDATA, XMLStreamConstants.SPACE -> {
+                    if(propertyFrame != null){
+                        propertyFrame.text.append(xmlStreamReader.getText());
+                    }
+                }
+                case XMLStreamConstants.END_ELEMENT -> {
+                    ElementFrame elementFrame = elementFrames.pop();
+                    if(elementFrame == propertyFrame){
+                        propertyFrame = null;
+                    }
+                    endElement(elementFrame);
+                }
+                default -> {}
+            }
+        }
+    }
+
+    /**
+     * creates the frame for an element which starts, determining the role of the element from its parent
+     * @param xmlStreamReader reader positioned at the start of the element
+     * @param parent          frame of the parent element, null for the root element
+     * @return the frame for the element
+     */
+    private static ElementFrame createElementFrame(XMLStreamReader xmlStreamReader, ElementFrame parent){
+        if(parent == null){
+            return new ElementFrame(ElementType.ROOT, null);
+        }
+        String name = xmlStreamReader.getLocalName();
+        switch (parent.type) {
+            case ROOT:
+                if(name.equals("concept")){
+                    return createConceptFrame(xmlStreamReader);
+                }
+                break;
+            case CONCEPT:
+                return createConceptChildFrame(xmlStreamReader, parent, name);
+            case VALUE_SET:
+                // only the first conceptList of the valueSet is used
+                if(name.equals("conceptList") && !parent.hasConceptList){
+                    parent.hasConceptList = true;
+                    return new ElementFrame(ElementType.CONCEPT_LIST, parent.concept);
+                }
+                break;
+            case CONCEPT_LIST:
+                // elements are in the concept tag, but may also be in the exception tag (NULLFlavors)
+                if(name.equals("concept") || name.equals("exception")){
+                    ElementFrame entryFrame = new ElementFrame(ElementType.VALUE_ENTRY, parent.concept);
+                    entryFrame.exception = name.equals("exception");
+                    entryFrame.valueCode = getAttributeValue(xmlStreamReader, "code");
+                    entryFrame.valueCodeSystem = getAttributeValue(xmlStreamReader, "codeSystemName");
+                    entryFrame.valueDisplayName = getAttributeValue(xmlStreamReader, "displayName");
+                    return entryFrame;
+                }
+                break;
+            case VALUE_ENTRY:
+                // the preferred designation contains the value as it appears in PALGA
+                if(name.equals("designation") && getAttributeValue(xmlStreamReader, "type").equalsIgnoreCase("preferred")){
+                    parent.textInLanguage = getAttributeValue(xmlStreamReader, "displayName");
+                }
+                break;
+            default:
+                break;
+        }
+        return new ElementFrame(ElementType.OTHER, null);
+    }
+
+    /**
+     * creates the frame for a child element of a concept
+     * @param xmlStreamReader reader positioned at the start of the element
+     * @param conceptFrame    frame of the concept
+     * @param name            name of the element
+     * @return the frame for the element
+     */
+    private static ElementFrame createConceptChildFrame(XMLStreamReader xmlStreamReader, ElementFrame conceptFrame, String name){
+        switch (name) {
+            case "concept":
+                // concepts in a group are concepts themselves
+                if(conceptFrame.group){
+                    return createConceptFrame(xmlStreamReader);
+                }
+                break;
+            case "property":
+                // the first PALGA_COLNAME property defines the column name
+                ElementFrame propertyFrame = new ElementFrame(ElementType.OTHER, conceptFrame);
+                if(conceptFrame.palgaColName == null && getAttributeValue(xmlStreamReader, "name").equalsIgnoreCase("PALGA_COLNAME")){
+                    propertyFrame.type = ElementType.PALGA_COLNAME_PROPERTY;
+                    propertyFrame.text = new StringBuilder();
+                }
+                return propertyFrame;
+            case "terminologyAssociation":
+                conceptFrame.terminologyAssociations.add(new String[]{
+                        getAttributeValue(xmlStreamReader, "conceptId"),
+                        getAttributeValue(xmlStreamReader, "code"),
+                        getAttributeValue(xmlStreamReader, "codeSystemName"),
+                        getAttributeValue(xmlStreamReader, "displayName")});
+                break;
+            case "valueSet":
+                // only the first valueSet of the concept is used
+                if(!conceptFrame.hasValueSet){
+                    conceptFrame.hasValueSet = true;
+                    return new ElementFrame(ElementType.VALUE_SET, conceptFrame);
+                }
+                break;
+            default:
+                break;
+        }
+        return new ElementFrame(ElementType.OTHER, null);
+    }
+
+    /**
+     * creates the frame for a concept element
+     * @param xmlStreamReader reader positioned at the start of the concept element
+     * @return the frame for the concept
+     */
+    private static ElementFrame createConceptFrame(XMLStreamReader xmlStreamReader){
+        ElementFrame conceptFrame = new ElementFrame(ElementType.CONCEPT, null);
+        conceptFrame.concept = conceptFrame;
+        conceptFrame.conceptId = getAttributeValue(xmlStreamReader, "id");
+        conceptFrame.group = getAttributeValue(xmlStreamReader, "type").equalsIgnoreCase("group");
+        conceptFrame.validStatusCode = hasValidStatusCode(getAttributeValue(xmlStreamReader, "statusCode"));
+        conceptFrame.terminologyAssociations = new ArrayList<>();
+        conceptFrame.valueEntries = new ArrayList<>();
+        conceptFrame.exceptionEntries = new ArrayList<>();
+        return conceptFrame;
+    }
+
+    /**
+     * handles the end of an element, passing the collected information on to the concept it belongs to
+     * @param elementFrame the frame of the element which ends
+     */
+    private void endElement(ElementFrame elementFrame){
+        switch (elementFrame.type) {
+            case PALGA_COLNAME_PROPERTY -> elementFrame.concept.palgaColName = elementFrame.text.toString().trim();
+            case VALUE_ENTRY -> {
+                List<ElementFrame> entries = elementFrame.exception ? elementFrame.concept.exceptionEntries : elementFrame.concept.valueEntries;
+                entries.add(elementFrame);
+            }
+            case CONCEPT -> {
+                if(elementFrame.validStatusCode){
+                    handleConcept(elementFrame);
+                }
+            }
+            default -> {}
+        }
+    }
+
+    /**
+     * Handles a concept of which the element has ended, checking for the palga column name, creating the concept, etc.
+     * @param conceptFrame the frame of the concept
+     */
+    private void handleConcept(ElementFrame conceptFrame){
+        String palgaColName = conceptFrame.palgaColName == null ? "" : conceptFrame.palgaColName;
+        if(!palgaColName.equalsIgnoreCase("")){
+            Concept concept = new Concept(conceptFrame.conceptId, palgaColName);
+            // values in the concept tags are added before those in the exception tags
+            addValueSet(concept, conceptFrame.valueEntries);
+            addValueSet(concept, conceptFrame.exceptionEntries);
+            palgaColNameToConceptMap.put(palgaColName, concept);
+            idToConceptMap.put(concept.getConceptId(), concept);
+            addTerminology(conceptFrame.terminologyAssociations);
+        }
+    }
+
+    /**
+     * adds the values of a value set to a concept
+     * @param concept      the concept to which to add the value set
+     * @param valueEntries frames of the value set entries
+     */
+    private static void addValueSet(Concept concept, List<ElementFrame> valueEntries){
+        for(ElementFrame entryFrame : valueEntries){
+            concept.addConceptListItem(entryFrame.valueCode, entryFrame.valueCodeSystem, entryFrame.valueDisplayName, entryFrame.textInLanguage);
+        }
+    }
+
+    /**
+     * adds terminology associations to concepts
+     * @param terminologyAssociations conceptId, code, codeSystemName and displayName of each association
+     */
+    private void addTerminology(List<String[]> terminologyAssociations){
+        for(String[] terminologyAssociation : terminologyAssociations){
+            Concept concept = idToConceptMap.get(terminologyAssociation[0]);
+            if(concept != null){
+                concept.addConceptTerminology(terminologyAssociation[1], terminologyAssociation[2], terminologyAssociation[3]);
+            }
+        }
+    }
+
+    /**
+     * returns the value of an xml attribute of the current element
+     * @param xmlStreamReader reader positioned at the start of an element
+     * @param attributeName   name of the attribute
+     * @return the value of the attribute or an empty string if the element doesn't have the attribute
+     */
+    private static String getAttributeValue(XMLStreamReader xmlStreamReader, String attributeName){
+        String attributeValue = xmlStreamReader.getAttributeValue(null, attributeName);
+        return attributeValue == null ? "" : attributeValue;
+    }
+
+    /**
+     * checks whether this element is of interest for us in our codebook, which depends on the statuscode of the element;
+     * we're only interested in items which are "draft" or "final"
+     * @param statusCode the statuscode of the element
+     * @return true/false
+     */
+    private static boolean hasValidStatusCode(String statusCode){
+        return statusCode.equalsIgnoreCase("draft") || statusCode.equalsIgnoreCase("final");
+    }
+
+    /**
+     * the role an element plays in the codebook
+     */
+    private enum ElementType {
+        ROOT,
+        CONCEPT,
+        PALGA_COLNAME_PROPERTY,
+        VALUE_SET,
+        CONCEPT_LIST,
+        VALUE_ENTRY,
+        OTHER
+    }
+
+    /**
+     * information collected for an open element
+     * concept frames collect the information of the concept; frames of elements within a concept refer to the concept
+     */
+    private static class ElementFrame {
+        private ElementType type;
+        // the frame of the concept the element belongs to
+        private ElementFrame concept;
+
+        // concepts
+        private String conceptId;
+        private boolean group;
+        private boolean validStatusCode;
+        private String palgaColName;
+        private boolean hasValueSet;
+        private List<String[]> terminologyAssociations;
+        private List<ElementFrame> valueEntries;
+        private List<ElementFrame> exceptionEntries;
+
+        // valueSet
+        private boolean hasConceptList;
+
+        // value set entries
+        private boolean exception;
+        private String valueCode;
+        private String valueCodeSystem;
+        private String valueDisplayName;
+        private String textInLanguage = "";
+
+        // PALGA_COLNAME property
+        private StringBuilder text;
+
+        /**
+         * new element frame
+         * @param type    role of the element
+         * @param concept frame of the concept the element belongs to
+         */
+        private ElementFrame(ElementType type, ElementFrame concept){
+            this.type = type;
+            this.concept = concept;
+        }
+    }
+}
@@ -27,13 +27,14 @@ import org.w3c.dom.Element;
 import org.w3c.dom.NodeList;
 import palgadatatranslator.utils.enumerate.OutputFormatType;
 import palgadatatranslator.settings.RunParameters;
+import palgadatatranslator.utils.ArtDecorCache;
 import palgadatatranslator.utils.ArtDecorCalls;
 import palgadatatranslator.utils.LogTracker;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
-import java.util.HashMap;
-import java.util.Map;
+import java.io.InputStream;
+import java.util.Arrays;
 
 /**
  * manager for the housekeeping protocol
@@ -47,14 +48,15 @@ import java.util.Map;
 public class HousekeepingCodebookManager {
     private static final Logger logger = LogManager.getLogger(HousekeepingCodebookManager.class.getName());
     // language to HousekeepingCodebook map
-    private static Map<String, HousekeepingCodebookManager> protocolCodebookManagerMap = new HashMap<>();
+    private static final SingleFlightRegistry<String, HousekeepingCodebookManager> protocolCodebookManagerRegistry = new SingleFlightRegistry<>();
     private static final String protocolPrefix = "housekeeping";
 
     // I'm assuming the housekeeping stuff will always return a description. We could also change this to follow the way the protocol manager handles this
     private static final OutputFormatType outputType = OutputFormatType.DESCRIPTIONS;
 
 //    private Map<String, DecorCodebook> codebookMap = new HashMap<>();
-    private DecorCodebook codebook;
+    // set once it has been loaded; only read afterwards, which allows the translation threads to share the manager
+    private volatile DecorCodebook codebook;
     private String datasetId;
     private final String fromLanguage; //e.g. nl-NL
 
@@ -68,10 +70,7 @@ public class HousekeepingCodebookManager {
         // perhaps useful in the future
         String fromLanguage = runParameters.getFromLanguage();
         String key = protocolPrefix+fromLanguage;
-        if(!protocolCodebookManagerMap.containsKey(key)){
-            protocolCodebookManagerMap.put(key, new HousekeepingCodebookManager(fromLanguage));
-        }
-        return protocolCodebookManagerMap.get(key);
+        return protocolCodebookManagerRegistry.get(key, k -> new HousekeepingCodebookManager(fromLanguage));
     }
 
     /**
@@ -80,7 +79,20 @@ public class HousekeepingCodebookManager {
      */
     private HousekeepingCodebookManager(String fromLanguage){
         this.fromLanguage = fromLanguage;
-        setProtocolVersionToIdMap();
+    }
+
+    /**
+     * loads the codebook, unless it has been loaded already; called at the start of each run
+     * a codebook which could not be loaded, e.g. because the server could not be reached, is not kept, so the next
+     * run tries again instead of translating without the codebook for the life of the program
+     */
+    public synchronized void loadCodebook(){
+        if(codebook != null){
+            return;
+        }
+        if(datasetId == null){
+            setProtocolVersionToIdMap();
+        }
         addCodebook();
     }
 
@@ -121,12 +133,30 @@ public class HousekeepingCodebookManager {
         return codebook.translateConcept(outputType, headerName);
     }
 
+    /**
+     * creates a translator for a column of the data which is part of the housekeeping codebook
+     * @param headerName      the headername of the column, which should be in the codebook
+     * @param outputCount     the number of outputs, which all use the output type of the housekeeping codebook
+     * @param translationMemo memo for the translated values
+     * @param untranslatedValueReport report of the values which could not be translated
+     * @return the column translator
+     */
+    public ColumnTranslator createColumnTranslator(String headerName, int outputCount, TranslationMemo translationMemo, UntranslatedValueReport untranslatedValueReport){
+        OutputFormatType[] outputTypes = new OutputFormatType[outputCount];
+        Arrays.fill(outputTypes, outputType);
+        return new ColumnTranslator(headerName, codebook, outputTypes, translationMemo, untranslatedValueReport);
+    }
+
     /**
      * creates a codebook
      */
     private void addCodebook(){
         if(datasetId!=null) {
-            codebook = new DecorCodebook(fromLanguage, datasetId, "1");
+            try {
+                codebook = new DecorCodebook(fromLanguage, datasetId, "1");
+            } catch (RuntimeException e){
+                LogTracker.logMessage(this.getClass(), e.getMessage());
+            }
         }
     }
 
@@ -140,7 +170,10 @@ public class HousekeepingCodebookManager {
 
         try {
             DocumentBuilder documentBuilder = documentBuilderFactory.newDocumentBuilder();
-            Document dom = documentBuilder.parse(uri);
+            Document dom;
+            try(InputStream inputStream = ArtDecorCache.openProjectIndex(protocolPrefix)) {
+                dom = documentBuilder.parse(inputStream, uri);
+            }
 
             //get the root element
             Element domElement = dom.getDocumentElement();
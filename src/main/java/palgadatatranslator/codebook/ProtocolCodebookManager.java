@@ -26,17 +26,35 @@ import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.NodeList;
 import palgadatatranslator.utils.enumerate.OutputFormatType;
+import palgadatatranslator.settings.GlobalSettings;
 import palgadatatranslator.settings.RunParameters;
+import palgadatatranslator.utils.ArtDecorCache;
 import palgadatatranslator.utils.ArtDecorCalls;
+import palgadatatranslator.utils.CancellationToken;
 import palgadatatranslator.utils.LogTracker;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.InputStream;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 /**
  * each protocol has a manager; each manager manages one or more versions of the codebook
+ * the managers are shared by the translation threads: each codebook is loaded once by the first thread which needs it,
+ * after which it is only read. The versions used in the data are prefetched concurrently before translation; other
+ * versions are loaded when first used
+ * a version which could not be loaded, e.g. because the server could not be reached or the version doesn't exist
+ * online, is not kept in the registry. It isn't tried again for every lookup of the run, but the next run which
+ * prefetches it tries again
  *
  * each language (if a non-Dutch one were to be used for some reason as input...)
  * should have the same mappings to the ontologies / standardised values
@@ -44,11 +62,15 @@ import java.util.*;
  */
 public class ProtocolCodebookManager {
     private static final Logger logger = LogManager.getLogger(ProtocolCodebookManager.class.getName());
-    private static final Map<String, ProtocolCodebookManager> protocolCodebookManagerMap = new HashMap<>();
-    private static final Map<String, CodebookInfo> protocolInfoMap = new HashMap<>();
+    private static final SingleFlightRegistry<String, ProtocolCodebookManager> protocolCodebookManagerRegistry = new SingleFlightRegistry<>();
+    private static final SingleFlightRegistry<String, CodebookInfo> protocolInfoRegistry = new SingleFlightRegistry<>();
+    // how often the prefetch checks whether the run was cancelled while it waits for the codebooks
+    private static final long cancelCheckMillis = 100;
 
-    // create a ordered map, which will allow us to easily find the newest codebook version
-    private final Map<String, NavigableMap<String, DecorCodebook>> codebookMap = new HashMap<>();
+    // codebooks by version; the manager is specific for the source language, so the language isn't part of the key
+    private final SingleFlightRegistry<String, DecorCodebook> codebookRegistry = new SingleFlightRegistry<>();
+    // versions which could not be loaded; these are skipped until they are prefetched again
+    private final Set<String> failedVersions = ConcurrentHashMap.newKeySet();
 
     // datasetId is the same for the multiple languages, so we do not need a language key here
     private final String protocolPrefix;
@@ -75,27 +97,104 @@ public class ProtocolCodebookManager {
         String protocolPrefix = runParameters.getProtocolPrefix();
         String fromLanguage = runParameters.getFromLanguage();
         String key = protocolPrefix + fromLanguage;
-        if (!protocolCodebookManagerMap.containsKey(key)) {
-            protocolCodebookManagerMap.put(key, new ProtocolCodebookManager(runParameters));
-        }
-        return protocolCodebookManagerMap.get(key);
+        return protocolCodebookManagerRegistry.get(key, k -> new ProtocolCodebookManager(runParameters));
     }
 
     /**
-     * attempts to create a new codebook for de codebookVersionsMap
+     * attempts to create a new codebook of a version
      *
-     * @param codebookVersionMap versionMap for some language
-     * @param version            the version that should be added
+     * @param version the version that should be created
+     * @return the codebook, or null if the version doesn't exist online or could not be loaded
      */
-    private void addCodebook(Map<String, DecorCodebook> codebookVersionMap, String version) {
-        String datasetId = protocolInfoMap.get(protocolPrefix).getId(version);
+    private DecorCodebook createCodebook(String version) {
+        String datasetId = getProtocolInfo(protocolPrefix).getId(version);
         if (datasetId == null) {
             String message = "version " + version + " of the protocol doesn't seem to exist online. Data using that version will not be translated.";
+            failedVersions.add(version);
             LogTracker.logMessage(this.getClass(), message);
+            return null;
+        }
+        try {
+            return new DecorCodebook(fromLanguage, datasetId, version);
+        } catch (RuntimeException e) {
+            failedVersions.add(version);
+            LogTracker.logMessage(this.getClass(), e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * loads the codebooks of the versions used in the data, before translation starts
+     * the codebooks are retrieved and parsed concurrently, by at most GlobalSettings.getCodebookFetchThreads() threads.
+     * A thread which needs one of these versions in the meantime waits for it instead of loading it again
+     *
+     * when the run is cancelled, the versions which are not being retrieved yet are skipped and the prefetch stops
+     * waiting. A codebook which is being retrieved is completed in the background, as the codebooks are shared with
+     * other runs and a partially retrieved codebook must not end up in the registry
+     *
+     * versions which could not be loaded before are tried again
+     *
+     * @param versions          the versions used in the data
+     * @param cancellationToken token which tells whether the run was cancelled
+     */
+    public void prefetchCodebooks(Collection<String> versions, CancellationToken cancellationToken) {
+        failedVersions.removeAll(versions);
+        List<String> missingVersions = new ArrayList<>();
+        for (String version : versions) {
+            if (!codebookRegistry.isLoaded(version) && !missingVersions.contains(version)) {
+                missingVersions.add(version);
+            }
+        }
+        if (missingVersions.isEmpty()) {
             return;
         }
-        DecorCodebook decorCodebook = new DecorCodebook(fromLanguage, datasetId, version);
-        codebookVersionMap.put(version, decorCodebook);
+
+        long start = System.nanoTime();
+        int threads = Math.min(missingVersions.size(), GlobalSettings.getCodebookFetchThreads());
+        AtomicInteger loadedVersions = new AtomicInteger();
+        ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (String version : missingVersions) {
+                futures.add(executorService.submit(() -> {
+                    if (!cancellationToken.isCancelled() && getCodebook(version) != null) {
+                        loadedVersions.incrementAndGet();
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                waitForCodebook(future, cancellationToken);
+            }
+        } catch (InterruptedException e) {
+            // the codebooks which haven't been loaded yet will be loaded when they are first used
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new RuntimeException("A severe error occurred while loading the codebooks: " + e.getCause().getMessage());
+        } finally {
+            // not shutdownNow, which would interrupt the retrieval of a codebook
+            executorService.shutdown();
+        }
+        logger.log(Level.INFO, "Loaded {} of {} codebook version(s) in {} ms using {} thread(s)", loadedVersions.get(), missingVersions.size(), (System.nanoTime() - start) / 1000000.0, threads);
+    }
+
+    /**
+     * waits until a codebook is loaded, checking regularly whether the run was cancelled
+     *
+     * @param future            the loading of the codebook
+     * @param cancellationToken token which tells whether the run was cancelled
+     * @throws InterruptedException when the thread is interrupted while waiting
+     * @throws ExecutionException   when the codebook could not be loaded
+     */
+    private static void waitForCodebook(Future<?> future, CancellationToken cancellationToken) throws InterruptedException, ExecutionException {
+        while (true) {
+            cancellationToken.checkCancelled();
+            try {
+                future.get(cancelCheckMillis, TimeUnit.MILLISECONDS);
+                return;
+            } catch (TimeoutException e) {
+                // not loaded yet
+            }
+        }
     }
 
     /**
@@ -110,7 +209,7 @@ public class ProtocolCodebookManager {
     public String translateValue(String headerName, String value, String version, OutputFormatType outputType) {
         String translatedValue = value;
         DecorCodebook decorCodebook = getCodebook(version);
-        if (decorCodebook != null && !value.equalsIgnoreCase("") && decorCodebook.containsHeaderName(headerName)) {
+        if (decorCodebook != null && !value.equalsIgnoreCase("")) {
             translatedValue = decorCodebook.translateConceptValue(outputType, value, headerName);
         }
         return translatedValue;
@@ -126,7 +225,7 @@ public class ProtocolCodebookManager {
      */
     public String translateConcept(String headerName, String version, OutputFormatType outputType) {
         DecorCodebook decorCodebook = getCodebook(version);
-        if (decorCodebook == null || !decorCodebook.containsHeaderName(headerName)) {
+        if (decorCodebook == null) {
             return headerName;
         }
         return decorCodebook.translateConcept(outputType, headerName);
@@ -148,25 +247,32 @@ public class ProtocolCodebookManager {
     }
 
 
+    /**
+     * creates a translator for a column of the data, which looks up the concept once for each codebook version
+     *
+     * @param headerName      the headerName of the column, without roman number
+     * @param versionCount    the number of different versions in the data
+     * @param outputTypes     the format type to use for each output
+     * @param translationMemo memo for the translated values
+     * @param untranslatedValueReport report of the values which could not be translated
+     * @return the column translator
+     */
+    public ColumnTranslator createColumnTranslator(String headerName, int versionCount, OutputFormatType[] outputTypes, TranslationMemo translationMemo, UntranslatedValueReport untranslatedValueReport) {
+        return new ColumnTranslator(headerName, this, versionCount, outputTypes, translationMemo, untranslatedValueReport);
+    }
+
     /**
      * returns codebook of the specified version
      *
      * @param version version of the codebook
-     * @return codebook
+     * @return codebook, or null if it doesn't exist or could not be loaded
      */
-    private DecorCodebook getCodebook(String version) {
-        // otherwise, check whether we have the protocol available for this language
-        if (!codebookMap.containsKey(fromLanguage)) {
-            codebookMap.put(fromLanguage, new TreeMap<>());
+    DecorCodebook getCodebook(String version) {
+        if (failedVersions.contains(version)) {
+            return null;
         }
-        Map<String, DecorCodebook> codebookVersionMap = codebookMap.get(fromLanguage);
-
-        // next, check whether we have the version available
-        // if not, create a recoder.codebook for this version
-        if (!codebookVersionMap.containsKey(version)) {
-            addCodebook(codebookVersionMap, version);
-        }
-        return codebookVersionMap.get(version);
+        // if the version isn't available yet, create a recoder.codebook for this version
+        return codebookRegistry.get(version, this::createCodebook);
     }
 
 //    /**
@@ -210,7 +316,7 @@ public class ProtocolCodebookManager {
      * @return list with the available languages
      */
     public static List<String> getProtocolLanguages(String protocolPrefix) {
-        return protocolInfoMap.get(protocolPrefix).getUniqueLanguages();
+        return getProtocolInfo(protocolPrefix).getUniqueLanguages();
     }
 
     /**
@@ -219,19 +325,27 @@ public class ProtocolCodebookManager {
      * @param protocolPrefix the protocol's prefix
      */
     public static void createProtocolInfo(String protocolPrefix) {
-        if (!protocolInfoMap.containsKey(protocolPrefix)) {
-            setProtocolVersionToIdMap(protocolPrefix);
-        }
+        getProtocolInfo(protocolPrefix);
+    }
+
+    /**
+     * returns the protocol info, creating it if it doesn't exist yet
+     *
+     * @param protocolPrefix the protocol's prefix
+     * @return the protocol info
+     */
+    private static CodebookInfo getProtocolInfo(String protocolPrefix) {
+        return protocolInfoRegistry.get(protocolPrefix, ProtocolCodebookManager::setProtocolVersionToIdMap);
     }
 
     /**
      * attempts to retrieve version and identifier information from a uri for the protocol
      *
      * @param protocolPrefix the protocol's prefix
+     * @return the version and identifier information
      */
-    private static void setProtocolVersionToIdMap(String protocolPrefix) {
+    private static CodebookInfo setProtocolVersionToIdMap(String protocolPrefix) {
         CodebookInfo codebookInfo = new CodebookInfo();
-        protocolInfoMap.put(protocolPrefix, codebookInfo);
 
         String uri = ArtDecorCalls.getProjectIndexURI(protocolPrefix);
         DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory.newInstance();
@@ -240,7 +354,10 @@ public class ProtocolCodebookManager {
 
         try {
             DocumentBuilder documentBuilder = documentBuilderFactory.newDocumentBuilder();
-            Document dom = documentBuilder.parse(uri);
+            Document dom;
+            try(InputStream inputStream = ArtDecorCache.openProjectIndex(protocolPrefix)) {
+                dom = documentBuilder.parse(inputStream, uri);
+            }
             //get the root element
             Element documentElement = dom.getDocumentElement();
 
@@ -264,6 +381,7 @@ public class ProtocolCodebookManager {
         } catch (Exception e) {
             throw new RuntimeException("Exception occurred while attempting to retrieve which version are available for the codebook: " + e.getMessage());
         }
+        return codebookInfo;
     }
 
     /**
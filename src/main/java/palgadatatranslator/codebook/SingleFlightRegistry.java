@@ -0,0 +1,84 @@
+/*
+ * Copyright 2017 NKI/AvL; VUmc 2018/2019/2020
+ *
+ * This file is part of PALGA Protocol Data Translator.
+ *
+ * PALGA Protocol Data Translator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PALGA Protocol Data Translator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PALGA Protocol Data Translator. If not, see <http://www.gnu.org/licenses/>
+ */
+package palgadatatranslator.codebook;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.function.Function;
+
+/**
+ * concurrent registry of loaded values, such as codebooks and codebook managers
+ * the first caller for a key loads the value; callers asking for the same key in the meantime wait for that load
+ * instead of loading the value a second time. Once loaded, values are returned without locking.
+ *
+ * loads which fail or return null are not remembered, so the next caller tries again
+ *
+ * @param <K> type of the keys
+ * @param <V> type of the values
+ */
+class SingleFlightRegistry<K, V> {
+    private final Map<K, FutureTask<V>> registry = new ConcurrentHashMap<>();
+
+    /**
+     * returns the value for a key, loading it if no other caller did (or is doing) so
+     * @param key    the key
+     * @param loader function which loads the value for the key
+     * @return the value, or null if the loader returned null
+     */
+    V get(K key, Function<? super K, ? extends V> loader) {
+        FutureTask<V> task = registry.get(key);
+        if(task == null) {
+            FutureTask<V> newTask = new FutureTask<>(() -> loader.apply(key));
+            task = registry.putIfAbsent(key, newTask);
+            if(task == null) {
+                task = newTask;
+                newTask.run();
+            }
+        }
+
+        try {
+            V value = task.get();
+            if(value == null) {
+                registry.remove(key, task);
+            }
+            return value;
+        } catch (ExecutionException e) {
+            registry.remove(key, task);
+            if(e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new RuntimeException("A severe error occurred while loading " + key + ": " + e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for " + key + " to be loaded");
+        }
+    }
+
+    /**
+     * returns whether the value for a key has been loaded
+     * @param key the key
+     * @return true/false
+     */
+    boolean isLoaded(K key) {
+        FutureTask<V> task = registry.get(key);
+        return task != null && task.isDone();
+    }
+}
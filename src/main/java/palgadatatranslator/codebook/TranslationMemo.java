@@ -0,0 +1,107 @@
+/*
+ * Copyright 2017 NKI/AvL; VUmc 2018/2019/2020
+ *
+ * This file is part of PALGA Protocol Data Translator.
+ *
+ * PALGA Protocol Data Translator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PALGA Protocol Data Translator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PALGA Protocol Data Translator. If not, see <http://www.gnu.org/licenses/>
+ */
+package palgadatatranslator.codebook;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * memo for translated values, shared by the column translators of a run
+ * the data usually contains only a few distinct values per column, so each (column, version, value) is translated
+ * once and every next occurrence gets the same String instance. The column translators own the maps for their
+ * columns and versions; this class bounds the total number of entries and counts the hits and misses
+ */
+public class TranslationMemo {
+    private static final int defaultMaxEntries = 100000;
+
+    private final int maxEntries;
+    private final AtomicInteger entries = new AtomicInteger();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * create a new memo with the default maximum number of entries
+     */
+    public TranslationMemo() {
+        this(defaultMaxEntries);
+    }
+
+    /**
+     * create a new memo
+     * @param maxEntries maximum number of translations which are remembered
+     */
+    public TranslationMemo(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * returns the remembered translation of a value, or translates it and remembers it if the memo isn't full yet
+     * @param memo        the map of the column and version to which the value belongs
+     * @param value       the value to translate
+     * @param translation translates the value when it is not in the memo yet
+     * @param <T>         the type of the remembered translations
+     * @return the translated value
+     */
+    <T> T translate(Map<String, T> memo, String value, Function<String, T> translation) {
+        T translatedValue = memo.get(value);
+        if(translatedValue != null) {
+            hits.increment();
+            return translatedValue;
+        }
+        misses.increment();
+        translatedValue = translation.apply(value);
+        if(entries.get() < maxEntries) {
+            // another thread may have translated the same value in the meantime; keep using the first instance
+            T existingValue = memo.putIfAbsent(value, translatedValue);
+            if(existingValue == null) {
+                entries.incrementAndGet();
+            }
+            else {
+                translatedValue = existingValue;
+            }
+        }
+        return translatedValue;
+    }
+
+    /**
+     * returns the number of values which were found in the memo
+     * @return number of hits
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * returns the number of values which had to be translated
+     * @return number of misses
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * returns the number of remembered translations
+     * @return number of entries
+     */
+    public int getEntries() {
+        return entries.get();
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2017 NKI/AvL; VUmc 2018/2019/2020
+ *
+ * This file is part of PALGA Protocol Data Translator.
+ *
+ * PALGA Protocol Data Translator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PALGA Protocol Data Translator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PALGA Protocol Data Translator. If not, see <http://www.gnu.org/licenses/>
+ */
+
+package palgadatatranslator.codebook;
+
+import palgadatatranslator.utils.LogTracker;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * counts the values which could not be translated, per column, codebook version and value, for a translation run
+ * a value which is missing from the codebook, e.g. due to a spelling difference, usually occurs in many cells. Instead
+ * of building and logging a message for every cell, the cells are counted and each distinct value is added to the
+ * issues of the LogTracker once, with its number of cells, when the run is done. The column translators record the
+ * values from multiple threads.
+ */
+public class UntranslatedValueReport {
+    private static final int defaultMaxEntries = 10000;
+
+    private final int maxEntries;
+    private final Map<UntranslatedValue, LongAdder> cellsByValue = new ConcurrentHashMap<>();
+    // cells of values which were not counted separately, as the report was full
+    private final LongAdder otherCells = new LongAdder();
+
+    /**
+     * create a new report with the default maximum number of distinct values
+     */
+    public UntranslatedValueReport() {
+        this(defaultMaxEntries);
+    }
+
+    /**
+     * create a new report
+     * @param maxEntries maximum number of distinct values which are counted separately
+     */
+    public UntranslatedValueReport(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * records cells with a value which could not be translated
+     * @param headerName the headerName of the column
+     * @param version    the codebook version
+     * @param value      the value
+     * @param cells      the number of cells with the value
+     */
+    void record(String headerName, String version, String value, int cells) {
+        UntranslatedValue untranslatedValue = new UntranslatedValue(headerName, version, value);
+        LongAdder valueCells = cellsByValue.get(untranslatedValue);
+        if(valueCells == null) {
+            if(cellsByValue.size() >= maxEntries) {
+                otherCells.add(cells);
+                return;
+            }
+            valueCells = cellsByValue.computeIfAbsent(untranslatedValue, k -> new LongAdder());
+        }
+        valueCells.add(cells);
+    }
+
+    /**
+     * adds each value which could not be translated to the issues of the run, with its number of cells
+     */
+    public void log() {
+        for(Map.Entry<UntranslatedValue, LongAdder> entry : cellsByValue.entrySet()) {
+            UntranslatedValue untranslatedValue = entry.getKey();
+            String message = "value \""+untranslatedValue.value+"\" ("+untranslatedValue.headerName+") doesn't seem to exist. Codebook version "+untranslatedValue.version+". Value will not be translated.";
+            LogTracker.logMessage(DecorCodebook.class, message, entry.getValue().sum());
+        }
+        if(otherCells.sum() > 0) {
+            LogTracker.logMessage(DecorCodebook.class, "Other values don't seem to exist. Values will not be translated.", otherCells.sum());
+        }
+    }
+
+    /**
+     * a value of a column which could not be translated using a codebook version
+     */
+    private static class UntranslatedValue {
+        private final String headerName;
+        private final String version;
+        private final String value;
+
+        /**
+         * new untranslated value
+         * @param headerName the headerName of the column
+         * @param version    the codebook version
+         * @param value      the value
+         */
+        private UntranslatedValue(String headerName, String version, String value) {
+            this.headerName = headerName;
+            this.version = version;
+            this.value = value;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(!(o instanceof UntranslatedValue)) {
+                return false;
+            }
+            UntranslatedValue other = (UntranslatedValue) o;
+            return headerName.equals(other.headerName) && version.equals(other.version) && value.equals(other.value);
+        }
+
+        @Override
+        public int hashCode() {
+            return (headerName.hashCode() * 31 + version.hashCode()) * 31 + value.hashCode();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2017 NKI/AvL; VUmc 2018/2019/2020
+ *
+ * This file is part of PALGA Protocol Data Translator.
+ *
+ * PALGA Protocol Data Translator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PALGA Protocol Data Translator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PALGA Protocol Data Translator. If not, see <http://www.gnu.org/licenses/>
+ */
+package palgadatatranslator.data.in;
+
+import palgadatatranslator.codebook.ColumnTranslator;
+import palgadatatranslator.codebook.TranslationMemo;
+import palgadatatranslator.codebook.UntranslatedValueReport;
+
+import java.util.Map;
+
+/**
+ * the translation plan for the columns of a data file, which is created once after the header and the romans are known
+ * each column has a translator, or null when the column is not written to the output. Each protocol version in the
+ * data has a slot, which allows the translators to find the concept for a version using an array index
+ */
+class ColumnPlan {
+    private final ColumnTranslator[] columnTranslators;
+    private final Map<String, Integer> versionSlots;
+    private final TranslationMemo translationMemo;
+    private final UntranslatedValueReport untranslatedValueReport;
+
+    /**
+     * create a new column plan
+     * @param columnTranslators translator for each column, null for columns which are skipped
+     * @param versionSlots      map from protocol version to version slot
+     * @param translationMemo   the memo which is used by the column translators
+     * @param untranslatedValueReport the report in which the column translators record untranslated values
+     */
+    ColumnPlan(ColumnTranslator[] columnTranslators, Map<String, Integer> versionSlots, TranslationMemo translationMemo, UntranslatedValueReport untranslatedValueReport) {
+        this.columnTranslators = columnTranslators;
+        this.versionSlots = versionSlots;
+        this.translationMemo = translationMemo;
+        this.untranslatedValueReport = untranslatedValueReport;
+    }
+
+    /**
+     * returns the translator of a column
+     * @param column index of the column
+     * @return the translator or null if the column is not written to the output
+     */
+    ColumnTranslator getColumnTranslator(int column) {
+        return columnTranslators[column];
+    }
+
+    /**
+     * returns the slot assigned to a protocol version
+     * @param version the protocol version
+     * @return the version slot
+     */
+    int getVersionSlot(String version) {
+        return versionSlots.get(version);
+    }
+
+    /**
+     * returns the number of version slots
+     * @return the number of version slots
+     */
+    int getVersionCount() {
+        return versionSlots.size();
+    }
+
+    /**
+     * returns the number of non-empty values which could not be translated
+     * @return the number of untranslated values
+     */
+    long getUntranslatedValues() {
+        long untranslatedValues = 0;
+        for(ColumnTranslator columnTranslator : columnTranslators) {
+            if(columnTranslator != null) {
+                untranslatedValues += columnTranslator.getUntranslatedValues();
+            }
+        }
+        return untranslatedValues;
+    }
+
+    /**
+     * returns the memo which is used by the column translators
+     * @return the translation memo
+     */
+    TranslationMemo getTranslationMemo() {
+        return translationMemo;
+    }
+
+    /**
+     * returns the report of the values which could not be translated
+     * @return the untranslated value report
+     */
+    UntranslatedValueReport getUntranslatedValueReport() {
+        return untranslatedValueReport;
+    }
+}
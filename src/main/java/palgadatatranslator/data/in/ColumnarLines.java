@@ -0,0 +1,171 @@
+/*
+ * Copyright 2017 NKI/AvL; VUmc 2018/2019/2020
+ *
+ * This file is part of PALGA Protocol Data Translator.
+ *
+ * PALGA Protocol Data Translator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PALGA Protocol Data Translator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PALGA Protocol Data Translator. If not, see <http://www.gnu.org/licenses/>
+ */
+
+package palgadatatranslator.data.in;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * keeps the data lines in memory, column by column
+ * the columns of PALGA data contain only a few distinct values, so each column has a dictionary with its distinct
+ * values and stores for each line the code of its value in the dictionary. A cell then takes an int instead of a
+ * reference in a list per line, and the distinct values of a column can be translated once instead of once per cell.
+ * The lines of a file do not need to have the same number of values, so the number of values of each line is kept.
+ */
+class ColumnarLines {
+    private static final int initialCapacity = 1024;
+
+    private final List<Column> columns = new ArrayList<>();
+    private int [] lineSizes = new int[initialCapacity];
+    private int lineCount = 0;
+
+    /**
+     * adds a line; the values are encoded, so the line itself is not kept
+     * @param line the values of the line
+     */
+    void add(List<String> line){
+        if(lineCount == lineSizes.length){
+            lineSizes = Arrays.copyOf(lineSizes, lineSizes.length*2);
+        }
+        while(columns.size() < line.size()){
+            columns.add(new Column());
+        }
+        for(int i=0; i<line.size(); i++){
+            columns.get(i).add(lineCount, line.get(i));
+        }
+        lineSizes[lineCount++] = line.size();
+    }
+
+    /**
+     * returns the number of lines
+     * @return the number of lines
+     */
+    int size(){
+        return lineCount;
+    }
+
+    /**
+     * returns the number of values of a line
+     * @param line index of the line
+     * @return the number of values
+     */
+    int getLineSize(int line){
+        return lineSizes[line];
+    }
+
+    /**
+     * returns the code of a value in the dictionary of its column
+     * @param line   index of the line
+     * @param column index of the column, which has to be smaller than the size of the line
+     * @return the code of the value
+     */
+    int getCode(int line, int column){
+        return columns.get(column).codes[line];
+    }
+
+    /**
+     * returns the value belonging to a code
+     * @param column index of the column
+     * @param code   code of the value in the dictionary of the column
+     * @return the value
+     */
+    String getValue(int column, int code){
+        return columns.get(column).values.get(code);
+    }
+
+    /**
+     * returns the number of distinct values of a column
+     * @param column index of the column
+     * @return the number of distinct values
+     */
+    int getDistinctValueCount(int column){
+        return column < columns.size() ? columns.get(column).values.size() : 0;
+    }
+
+    /**
+     * returns the number of distinct values over all columns
+     * @return the number of distinct values
+     */
+    long getDistinctValueCount(){
+        return columns.stream().mapToLong(column -> column.values.size()).sum();
+    }
+
+    /**
+     * returns the number of values over all lines
+     * @return the number of values
+     */
+    long getCellCount(){
+        long cellCount = 0;
+        for(int i=0; i<lineCount; i++){
+            cellCount += lineSizes[i];
+        }
+        return cellCount;
+    }
+
+    /**
+     * estimates the bytes used to store the lines, leaving out the Strings of the distinct values
+     * assumes a 64-bit JVM with compressed references: 16 bytes for an object header and 4 bytes for a reference
+     * the dictionary costs about 48 bytes per distinct value for its map entry, boxed code and list reference
+     * @return the estimated number of bytes
+     */
+    long estimateBytes(){
+        return 4L*lineCount + 4L*columns.size()*lineCount + 48L*getDistinctValueCount();
+    }
+
+    /**
+     * estimates the bytes used to store the same lines as a list of values per line, as they were stored before, also
+     * leaving out the Strings: the list and its array take 32 bytes plus a reference per value
+     * @return the estimated number of bytes
+     */
+    long estimateListBytes(){
+        return 32L*lineCount + 4L*getCellCount() + 4L*lineCount;
+    }
+
+    /**
+     * a column: the dictionary with its distinct values and the code of the value of each line
+     */
+    private class Column {
+        private final Map<String, Integer> dictionary = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+        // lines which are too short to have a value in this column keep code 0, but their size tells it is absent
+        private int [] codes = new int[lineSizes.length];
+
+        /**
+         * adds the value of a line
+         * @param line  index of the line
+         * @param value the value
+         */
+        private void add(int line, String value){
+            if(line >= codes.length){
+                codes = Arrays.copyOf(codes, Math.max(lineSizes.length, line+1));
+            }
+            Integer code = dictionary.get(value);
+            if(code == null){
+                code = values.size();
+                dictionary.put(value, code);
+                values.add(value);
+            }
+            codes[line] = code;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2017 NKI/AvL; VUmc 2018/2019/2020
+ *
+ * This file is part of PALGA Protocol Data Translator.
+ *
+ * PALGA Protocol Data Translator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PALGA Protocol Data Translator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PALGA Protocol Data Translator. If not, see <http://www.gnu.org/licenses/>
+ */
+
+package palgadatatranslator.data.in;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * reads a data file row by row, so the rows can be handled without keeping the file in memory
+ * a data file may be read more than once, e.g. when the data is streamed
+ *
+ * the values of the data lines are cleaned by the reader, and the list of a data line is reused for the next line, so
+ * a consumer which keeps a line has to copy it
+ */
+interface DataReader {
+
+    /**
+     * reads the data file, passing the header and each of the data lines to the consumers
+     * @param headerConsumer consumer for the names in the header line
+     * @param lineConsumer   consumer for the values in the data lines
+     */
+    void read(Consumer<List<String>> headerConsumer, Consumer<List<String>> lineConsumer);
+}
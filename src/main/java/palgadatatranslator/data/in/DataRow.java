@@ -0,0 +1,97 @@
+/*
+ * Copyright 2017 NKI/AvL; VUmc 2018/2019/2020
+ *
+ * This file is part of PALGA Protocol Data Translator.
+ *
+ * PALGA Protocol Data Translator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PALGA Protocol Data Translator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PALGA Protocol Data Translator. If not, see <http://www.gnu.org/licenses/>
+ */
+
+package palgadatatranslator.data.in;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * the cleaned values of a data line, which a data reader reuses for every line it reads
+ * the values are stored in an array which only grows when a line has more values than any line before, so reading a
+ * line does not create a new list. As the row is reused, whoever wants to keep the values of a line has to copy them.
+ */
+class DataRow extends AbstractList<String> implements RandomAccess {
+    private String [] values = new String[16];
+    private int size = 0;
+
+    /**
+     * removes the values, so the row can be filled with the next line
+     */
+    @Override
+    public void clear(){
+        size = 0;
+    }
+
+    /**
+     * adds a value which has already been cleaned
+     * @param value the value
+     */
+    void addValue(String value){
+        if(size == values.length){
+            values = Arrays.copyOf(values, values.length*2);
+        }
+        values[size++] = value;
+    }
+
+    /**
+     * returns a value of the row
+     * @param index index of the value
+     * @return the value
+     */
+    @Override
+    public String get(int index){
+        if(index >= size){
+            throw new IndexOutOfBoundsException("Index "+index+" out of bounds for length "+size);
+        }
+        return values[index];
+    }
+
+    /**
+     * returns the number of values in the row
+     * @return the number of values
+     */
+    @Override
+    public int size(){
+        return size;
+    }
+
+    /**
+     * returns a copy of the values, which can be kept after the row is reused
+     * @return the values
+     */
+    List<String> copy(){
+        return Arrays.asList(Arrays.copyOf(values, size));
+    }
+
+    /**
+     * trim the value and remove quotes that excel sometimes adds
+     * @param value value to clean
+     * @return cleaned value
+     */
+    static String clean(String value){
+        value = value.trim();
+        if(value.length() > 1 && value.startsWith("\"") && value.endsWith("\"")){
+            value = value.substring(1, value.length()-1);
+        }
+        return value;
+    }
+}
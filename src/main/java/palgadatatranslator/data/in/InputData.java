@@ -33,5 +33,22 @@ public interface InputData {
      */
     void writeOutput();
 
+    /**
+     * returns the number of data lines
+     * @return the number of data lines
+     */
+    int getRowCount();
+
+    /**
+     * returns the number of non-empty values which could not be translated
+     * @return the number of untranslated values
+     */
+    long getUntranslatedCellCount();
+
+    /**
+     * returns the last reported progress of the run
+     * @return the progress
+     */
+    TranslationProgress getProgress();
 
 }
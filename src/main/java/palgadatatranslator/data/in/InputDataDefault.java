@@ -20,15 +20,26 @@
 package palgadatatranslator.data.in;
 
 import palgadatatranslator.data.out.OutputData;
+import palgadatatranslator.data.out.OutputDataEntityAttributeValue;
 import palgadatatranslator.data.out.OutputDataLongFormat;
 import palgadatatranslator.utils.enumerate.OutputFormatType;
+import palgadatatranslator.utils.enumerate.OutputLayout;
+import palgadatatranslator.utils.enumerate.ProcessingMode;
+import palgadatatranslator.utils.enumerate.TranslationPhase;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import palgadatatranslator.codebook.ColumnTranslator;
 import palgadatatranslator.codebook.HousekeepingCodebookManager;
+import palgadatatranslator.codebook.TranslationMemo;
+import palgadatatranslator.codebook.UntranslatedValueReport;
 import palgadatatranslator.codebook.ProtocolCodebookManager;
+import palgadatatranslator.settings.OutputTarget;
 import palgadatatranslator.settings.RunParameters;
 import palgadatatranslator.utils.Romans;
+import palgadatatranslator.utils.TranslationCancelledException;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
 /**
  * shared class for InputData types
@@ -39,12 +50,15 @@ import java.util.stream.Collectors;
  * Hence, we keep lists with the original header names, the header names without the roman numbers and a list with just the roman numbers
  */
 abstract class InputDataDefault implements InputData {
+    private static final Logger logger = LogManager.getLogger(InputDataDefault.class.getName());
     private static final String protocolVersionColName = "depvenr";
 
     private int protocolVersionIndex;
+    private int rowCount = 0;
 
-    // the data lines
-    List<List<String>> lines = new ArrayList<>();
+    // the data lines, stored per column; only filled when the data is buffered, a streaming run reads the lines again
+    // while translating
+    final ColumnarLines lines = new ColumnarLines();
     // the original header
     List<String> origHeaderList = new ArrayList<>();
     // the header, without roman numbers
@@ -57,80 +71,168 @@ abstract class InputDataDefault implements InputData {
     // of the protocol used in the data file. In that case translating it using the newest version present
     // would result in an error
     String [] maxVersionForConcept;
+    // the same versions as numbers, so they don't have to be parsed for every value
+    private int [] maxVersionNumberForConcept;
 
-    OutputData outputData;
-    OutputFormatType outputFormatType;
+    // the protocol versions found in the data, each with its own version slot
+    private final Map<String, Integer> versionSlots = new LinkedHashMap<>();
+
+    ColumnPlan columnPlan;
+
+    // an output data for each output target, which all receive the lines of the same translation
+    List<OutputData> outputDataList;
+    // the format type of each output target
+    OutputFormatType [] outputFormatTypes;
 
     RunParameters runParameters;
+    final ProgressTracker progressTracker;
 
     /**
      * constructor
      */
-    InputDataDefault(RunParameters runParameters){
+    InputDataDefault(RunParameters runParameters, ProgressTracker progressTracker){
         this.runParameters = runParameters;
-        this.outputFormatType = runParameters.getOutputFormatType();
+        this.progressTracker = progressTracker;
+        this.outputFormatTypes = runParameters.getOutputTargets().stream().map(OutputTarget::getOutputFormatType).toArray(OutputFormatType[]::new);
     }
 
     /**
      * handle the header of the data file
-     * @param line the header line, tab separated
+     * @param header the names in the header line
      */
-    void addHeader(String line){
-        origHeaderList = Arrays.asList(line.split("\t"));
+    void addHeader(List<String> header){
+        origHeaderList = header;
         protocolVersionIndex = origHeaderList.indexOf(protocolVersionColName);
         maxVersionForConcept = new String[origHeaderList.size()];
         Arrays.fill(maxVersionForConcept, "-1");
+        maxVersionNumberForConcept = new int[origHeaderList.size()];
+        Arrays.fill(maxVersionNumberForConcept, -1);
     }
 
     /**
      * add a line which contains data
-     * @param line the line with data, tab separated
+     * @param line the cleaned values in the line; the data reader reuses the list, so it is encoded when it is kept
      */
-    void addData(String line){
-        List<String> newLine = prepareLine(line);
-        checkMaxVersionConcept(newLine);
-        lines.add(newLine);
+    void addData(List<String> line){
+        checkMaxVersionConcept(line);
+        rowCount++;
+        progressTracker.add(1);
+        if(!isStreaming()) {
+            lines.add(line);
+        }
     }
 
     /**
-     * prepare the line, changing it to a list and cleaning it
-     * @param line the line to prepare
-     * @return list representation of the line
+     * logs how much memory the buffered lines take compared to keeping a list per line
      */
-    private List<String> prepareLine(String line){
-        String [] splitLine = line.split("\t", -1);
-        return Arrays.stream(splitLine).map(this::cleanValue).collect(Collectors.toList());
+    void logBufferedLines(){
+        logger.log(Level.INFO, "Buffered {} lines with {} values as {} distinct values: about {} KB instead of {} KB as lists (not counting the values themselves)",
+                lines.size(), lines.getCellCount(), lines.getDistinctValueCount(), lines.estimateBytes()/1024, lines.estimateListBytes()/1024);
     }
 
     /**
-     * trim the value and remove quotes that excel sometimes adds
-     * @param value value to clean
-     * @return cleaned value
+     * returns whether the data is streamed from disk instead of kept in memory
+     * @return true/false
      */
-    private String cleanValue(String value){
-        value = value.trim();
-        if(value.startsWith("\"") && value.endsWith("\"")){
-            value = value.substring(1, value.length()-1);
-        }
-        return value;
+    boolean isStreaming(){
+        return runParameters.getProcessingMode().isStreaming();
+    }
+
+    /**
+     * returns whether the second pass over the data file runs as a pipeline of reader, translator and writer threads
+     * @return true/false
+     */
+    boolean isPipelined(){
+        return runParameters.getProcessingMode() == ProcessingMode.PIPELINED;
     }
 
     /**
-     * translate data; creates outputdata and translates the header and values
+     * translate data; creates outputdata for each output target and translates the header and values
      */
     @Override
     public final void translate(){
-        outputData = createOutputData();
-        translateHeader();
-        translateValues();
+        outputDataList = new ArrayList<>();
+        for(OutputTarget outputTarget : runParameters.getOutputTargets()){
+            outputDataList.add(createOutputData(runParameters.forOutputTarget(outputTarget)));
+        }
+        try {
+            // buffered lines are counted while they are written, streamed lines while they are translated
+            progressTracker.startPhase(TranslationPhase.TRANSLATE, isStreaming() ? rowCount : -1);
+            translateHeader();
+            columnPlan = createColumnPlan();
+            translateValues();
+            progressTracker.finishPhase();
+        } catch (TranslationCancelledException e){
+            discardOutput();
+            throw e;
+        }
     }
 
     /**
-     * write the output to file
+     * write the output of each output target to file
+     * buffered lines are only turned into translated lines now, as the outputs write the lines as they receive them
      */
     @Override
     public final void writeOutput() {
-        outputData.writeData();
+        try {
+            progressTracker.startPhase(TranslationPhase.WRITE, isStreaming() ? 0 : rowCount);
+            if(!isStreaming()) {
+                writeBufferedLines();
+            }
+            // the run can no longer be cancelled once the outputs are being completed
+            progressTracker.checkCancelled();
+        } catch (TranslationCancelledException e){
+            discardOutput();
+            throw e;
+        }
+        for(OutputData outputData : outputDataList){
+            outputData.writeData();
+        }
+        progressTracker.finishPhase();
+        logTranslationMemo();
+        columnPlan.getUntranslatedValueReport().log();
+    }
+
+    /**
+     * deletes the partial output files of a cancelled run
+     * every output is discarded, even if discarding another one failed
+     */
+    private void discardOutput() {
+        for(OutputData outputData : outputDataList){
+            try {
+                outputData.discardData();
+            } catch (RuntimeException e){
+                logger.log(Level.ERROR, e.getMessage());
+            }
+        }
+        logger.log(Level.INFO, "Deleted the partial output files of the cancelled translation");
+    }
+
+    /**
+     * returns the number of data lines
+     * @return the number of data lines
+     */
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * returns the number of non-empty values which could not be translated; 0 before the data is translated
+     * @return the number of untranslated values
+     */
+    @Override
+    public long getUntranslatedCellCount() {
+        return columnPlan == null ? 0 : columnPlan.getUntranslatedValues();
+    }
+
+    /**
+     * returns the last reported progress of the run
+     * @return the progress
+     */
+    @Override
+    public TranslationProgress getProgress() {
+        return progressTracker.getProgress();
     }
 
     /**
@@ -142,28 +244,49 @@ abstract class InputDataDefault implements InputData {
         return line.get(protocolVersionIndex);
     }
 
+    /**
+     * returns the index of the protocol version column
+     * @return the index of the column
+     */
+    int versionColumnIndex(){
+        return protocolVersionIndex;
+    }
+
     /**
      * identify roman numbers in the header
      */
     void checkRomans(){
         ProtocolCodebookManager protocolCodebookManager = ProtocolCodebookManager.getProtocolManager(runParameters);
         HousekeepingCodebookManager housekeepingCodebookManager = HousekeepingCodebookManager.getProtocolManager(runParameters);
-        origHeaderList.forEach(t->setRomans(housekeepingCodebookManager, protocolCodebookManager, t));
+        // all versions used in the data are known now, so load their codebooks before they are needed
+        progressTracker.startPhase(TranslationPhase.CODEBOOK_FETCH, versionSlots.size());
+        housekeepingCodebookManager.loadCodebook();
+        protocolCodebookManager.prefetchCodebooks(versionSlots.keySet(), progressTracker.getCancellationToken());
+        progressTracker.add(versionSlots.size());
+        progressTracker.finishPhase();
+
+        progressTracker.startPhase(TranslationPhase.ROMANS, origHeaderList.size());
+        for(int i=0; i<origHeaderList.size(); i++){
+            setRomans(housekeepingCodebookManager, protocolCodebookManager, i);
+            progressTracker.add(1);
+        }
+        progressTracker.finishPhase();
     }
 
     /**
      * identify roman numbers in a headername
      * @param protocolCodebookManager protocol codebook manager
-     * @param origName                original name of header
+     * @param index                   index of the header
      */
-    private void setRomans(HousekeepingCodebookManager housekeepingCodebookManager, ProtocolCodebookManager protocolCodebookManager, String origName) {
+    private void setRomans(HousekeepingCodebookManager housekeepingCodebookManager, ProtocolCodebookManager protocolCodebookManager, int index) {
         String noRomanName;
-        String maxProtocolVersionForConcept = maxVersionForConcept[origHeaderList.indexOf(origName)];
+        String origName = origHeaderList.get(index);
+        String maxProtocolVersionForConcept = maxVersionForConcept[index];
 
         // check whether the column actually has data in it. If not, there's no need to search
         // for romans, as it won't be written anyway (and it would also be problematic as we wouldn't know
         // which version of the codebook to use for the translation of the header)
-        if(addDataToOutput(origName) && !housekeepingCodebookManager.containsHeaderName(origName)){
+        if(addDataToOutput(index) && !housekeepingCodebookManager.containsHeaderName(origName)){
             // retrieve a list of the romans which were possibly used in this headername
             List<String> romanList = Romans.romanNumberMatch(origName);
 
@@ -195,11 +318,12 @@ abstract class InputDataDefault implements InputData {
      */
     private void checkMaxVersionConcept(List<String> line){
         String version = line.get(protocolVersionIndex);
+        versionSlots.putIfAbsent(version, versionSlots.size());
+        int versionNumber = Integer.parseInt(version);
         for(int i=0; i<line.size(); i++){
-            if(!line.get(i).equalsIgnoreCase("")){
-                if(Integer.parseInt(maxVersionForConcept[i])<Integer.parseInt(version)){
-                    maxVersionForConcept[i] = version;
-                }
+            if(!line.get(i).isEmpty() && maxVersionNumberForConcept[i]<versionNumber){
+                maxVersionNumberForConcept[i] = versionNumber;
+                maxVersionForConcept[i] = version;
             }
         }
     }
@@ -210,7 +334,16 @@ abstract class InputDataDefault implements InputData {
      * @return true/false
      */
     public boolean addDataToOutput(String headerName){
-        return !maxVersionForConcept[origHeaderList.indexOf(headerName)].equalsIgnoreCase("-1");
+        return addDataToOutput(origHeaderList.indexOf(headerName));
+    }
+
+    /**
+     * returns whether the concept at an index of the header is eligible for output
+     * @param index index of the concept in the header
+     * @return true/false
+     */
+    boolean addDataToOutput(int index){
+        return !maxVersionForConcept[index].equalsIgnoreCase("-1");
     }
 
     /**
@@ -237,16 +370,54 @@ abstract class InputDataDefault implements InputData {
         return romansInHeader;
     }
 
+    /**
+     * creates the column plan, which resolves for each column whether it is skipped, part of the housekeeping
+     * codebook or part of the protocol codebook
+     * @return the column plan
+     */
+    private ColumnPlan createColumnPlan(){
+        HousekeepingCodebookManager housekeepingCodebookManager = HousekeepingCodebookManager.getProtocolManager(runParameters);
+        ProtocolCodebookManager protocolCodebookManager = ProtocolCodebookManager.getProtocolManager(runParameters);
+        ColumnTranslator [] columnTranslators = new ColumnTranslator[origHeaderList.size()];
+        TranslationMemo translationMemo = new TranslationMemo();
+        UntranslatedValueReport untranslatedValueReport = new UntranslatedValueReport();
+
+        for(int i=0; i<origHeaderList.size(); i++){
+            if(addDataToOutput(i)){
+                String headerName = noRomanHeaderList.get(i);
+                if(housekeepingCodebookManager.containsHeaderName(headerName)){
+                    columnTranslators[i] = housekeepingCodebookManager.createColumnTranslator(headerName, outputFormatTypes.length, translationMemo, untranslatedValueReport);
+                }
+                else {
+                    columnTranslators[i] = protocolCodebookManager.createColumnTranslator(headerName, versionSlots.size(), outputFormatTypes, translationMemo, untranslatedValueReport);
+                }
+            }
+        }
+        return new ColumnPlan(columnTranslators, versionSlots, translationMemo, untranslatedValueReport);
+    }
+
+    /**
+     * logs how often translated values could be taken from the translation memo
+     */
+    private void logTranslationMemo(){
+        TranslationMemo translationMemo = columnPlan.getTranslationMemo();
+        logger.log(Level.INFO, "Translation memo: {} hits, {} misses, {} remembered translations", translationMemo.getHits(), translationMemo.getMisses(), translationMemo.getEntries());
+    }
+
     /**
      * create new output data
+     * @param targetRunParameters the run parameters of a single output target
      * @return new OutputData object
      */
-    private OutputData createOutputData(){
-        // currently we only support Long format
-        return new OutputDataLongFormat(runParameters);
+    private OutputData createOutputData(RunParameters targetRunParameters){
+        if(targetRunParameters.getOutputLayout() == OutputLayout.ENTITY_ATTRIBUTE_VALUE){
+            return new OutputDataEntityAttributeValue(targetRunParameters);
+        }
+        return new OutputDataLongFormat(targetRunParameters);
     }
 
     abstract void translateHeader();
     abstract void translateValues();
+    abstract void writeBufferedLines();
 
 }
@@ -19,8 +19,9 @@
 
 package palgadatatranslator.data.in;
 
-import palgadatatranslator.utils.enumerate.OutputFileType;
+import palgadatatranslator.utils.enumerate.InputFileType;
 import palgadatatranslator.settings.RunParameters;
+import palgadatatranslator.utils.CancellationToken;
 
 /**
  * Factory for creating input data
@@ -29,15 +30,51 @@ public class InputDataFactory {
 
     /**
      * get the appropriate object, depending on the runsettings
-     * currently the program only support text output
+     * the data file is read depending on its type; the output file type is handled by the output data
      * @param runParameters    the settings for this run
      * @return inputdata
      */
     public static InputData getInputData(RunParameters runParameters){
-        OutputFileType outputFileType = runParameters.getOutputFileType();
-        if(outputFileType.equals(OutputFileType.TEXT)){
-            return InputDataText.createDataset(runParameters);
+        return getInputData(runParameters, null, 0);
+    }
+
+    /**
+     * get the appropriate object, depending on the runsettings, reporting the progress of the run to a listener
+     * the data file is read depending on its type; the output file type is handled by the output data
+     * @param runParameters        the settings for this run
+     * @param progressListener     receives the progress of the run, starting with reading the data file
+     * @param reportIntervalMillis the minimal time between two reports within a phase of the run
+     * @return inputdata
+     */
+    public static InputData getInputData(RunParameters runParameters, ProgressListener progressListener, long reportIntervalMillis){
+        return getInputData(runParameters, progressListener, reportIntervalMillis, new CancellationToken());
+    }
+
+    /**
+     * get the appropriate object, depending on the runsettings, reporting the progress of the run to a listener
+     * the run can be cancelled using the token; the run then throws a TranslationCancelledException from the step it
+     * is in and the partial output files are deleted
+     * @param runParameters        the settings for this run
+     * @param progressListener     receives the progress of the run, starting with reading the data file
+     * @param reportIntervalMillis the minimal time between two reports within a phase of the run
+     * @param cancellationToken    token with which the run can be cancelled
+     * @return inputdata
+     */
+    public static InputData getInputData(RunParameters runParameters, ProgressListener progressListener, long reportIntervalMillis, CancellationToken cancellationToken){
+        ProgressTracker progressTracker = new ProgressTracker(progressListener, reportIntervalMillis, cancellationToken);
+        return InputDataText.createDataset(runParameters, createDataReader(runParameters), progressTracker);
+    }
+
+    /**
+     * get the reader for the data file, depending on the type of the input file
+     * @param runParameters    the settings for this run
+     * @return reader for the data file
+     */
+    private static DataReader createDataReader(RunParameters runParameters){
+        InputFileType inputFileType = runParameters.getInputFileType();
+        if(inputFileType.equals(InputFileType.XLSX)){
+            return new XlsxDataReader(runParameters);
         }
-        return null;
+        return new TextDataReader(runParameters);
     }
 }
@@ -19,51 +19,65 @@
 
 package palgadatatranslator.data.in;
 
+import palgadatatranslator.codebook.ColumnTranslator;
 import palgadatatranslator.codebook.HousekeepingCodebookManager;
 import palgadatatranslator.codebook.ProtocolCodebookManager;
+import palgadatatranslator.settings.GlobalSettings;
 import palgadatatranslator.settings.RunParameters;
+import palgadatatranslator.utils.Romans;
+import palgadatatranslator.utils.enumerate.TranslationPhase;
 
-import java.io.*;
-import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
- * Used when data format should be simple text
+ * Used for data of which the lines are translated one by one
+ * the data file itself is read by a data reader, which depends on the type of the input file; the output file type is
+ * handled by the output data
  */
 class InputDataText extends InputDataDefault {
+    private final DataReader dataReader;
+    // for buffered data, the translations of the distinct values of each column, indexed by code and version slot;
+    // null for a column which is not translated per distinct value
+    private String [][][] distinctValueTranslations;
 
-    private InputDataText(RunParameters runParameters){
-        super(runParameters);
+    private InputDataText(RunParameters runParameters, DataReader dataReader, ProgressTracker progressTracker){
+        super(runParameters, progressTracker);
+        this.dataReader = dataReader;
     }
 
     /**
      * reads input file based on the runsettings and returns a new InputDataText
      * @param runParameters settings for this run
+     * @param dataReader    reader for the data file
+     * @param progressTracker keeps track of the progress of the run
      * @return  a new Object which contains the datafile and can be used to generate the text output
      */
-    static InputDataText createDataset(RunParameters runParameters){
-        InputDataText inputDataText = new InputDataText(runParameters);
-        String line;
-
-        // create buffered reader
-        try(BufferedReader br = new BufferedReader(
-                new InputStreamReader(new FileInputStream(new File(runParameters.getInputFileName())), StandardCharsets.ISO_8859_1))) {
-            // read the first line of the recoder.data, which contains the header, and add it to our input recoder.data
-            inputDataText.addHeader(br.readLine());
-            // add other lines
-            while((line=br.readLine())!=null){
-                inputDataText.addData(line);
-            }
-            inputDataText.checkRomans();
-        } catch(IOException e){
-            throw new RuntimeException("A fatal exception occurred whilst reading the dataset: "+e.getMessage());
+    static InputDataText createDataset(RunParameters runParameters, DataReader dataReader, ProgressTracker progressTracker){
+        InputDataText inputDataText = new InputDataText(runParameters, dataReader, progressTracker);
+        // when streaming, this is the first pass, which only collects the versions used for each concept
+        progressTracker.startPhase(TranslationPhase.READ, -1);
+        inputDataText.readDataFile(inputDataText::addHeader, inputDataText::addData);
+        progressTracker.finishPhase();
+        if(!inputDataText.isStreaming()) {
+            inputDataText.logBufferedLines();
         }
+        inputDataText.checkRomans();
         return inputDataText;
     }
 
     /**
-     * translate the header
+     * reads the data file, passing the header and each of the data lines to the consumers
+     * @param headerConsumer consumer for the header line
+     * @param lineConsumer   consumer for the data lines
+     */
+    private void readDataFile(Consumer<List<String>> headerConsumer, Consumer<List<String>> lineConsumer){
+        dataReader.read(headerConsumer, lineConsumer);
+    }
+
+    /**
+     * translate the header for each output
      */
     @Override
     void translateHeader(){
@@ -72,75 +86,207 @@ class InputDataText extends InputDataDefault {
 
         // for all elements in the noRomanHeaderList
         for(int i=0; i<noRomanHeaderList.size(); i++){
-            // retrieve the original name of the element, with which we can check whether this column
-            // should be added to the output
-            String origHeaderName = origHeaderList.get(i);
-            if(addDataToOutput(origHeaderName)){
+            // check whether this column should be added to the output
+            if(addDataToOutput(i)){
 
                 // retrieve the header name without roman, as well as the maximum codebook version used for the concept
                 String headerName = noRomanHeaderList.get(i);
                 String protocolVersion = maxVersionForConcept[i];
-                String translatedHeader;
+                boolean housekeeping = housekeepingCodebookManager.containsHeaderName(headerName);
+                // if it was a roman item, pass on its number; the output adds it to the header if necessary
+                int repeat = housekeeping ? 0 : Romans.getRomanIndex(romansInHeader.get(i));
 
-                // translate the header via the housekeepingcodebook or via the protocolcodebook
-                if (housekeepingCodebookManager.containsHeaderName(headerName)) {
-                    translatedHeader = housekeepingCodebookManager.translateConcept(headerName);
-                    // store the translated header
-                }
-                else {
-                    translatedHeader = protocolCodebookManager.translateConcept(headerName, protocolVersion, outputFormatType);
-                    // if it was a roman item, add an extension to the header
-                    if (!romansInHeader.get(i).equalsIgnoreCase("")) {
-                        translatedHeader += "_" + romansInHeader.get(i);
+                for(int j=0; j<outputDataList.size(); j++){
+                    String translatedHeader;
+                    // translate the header via the housekeepingcodebook or via the protocolcodebook
+                    if (housekeeping) {
+                        translatedHeader = housekeepingCodebookManager.translateConcept(headerName);
+                    }
+                    else {
+                        translatedHeader = protocolCodebookManager.translateConcept(headerName, protocolVersion, outputFormatTypes[j]);
                     }
+                    // store the translated header
+                    outputDataList.get(j).addHeaderValue(origHeaderList.get(i), translatedHeader, repeat);
                 }
-                outputData.addHeaderValue(origHeaderList.get(i), translatedHeader);
             }
         }
     }
 
     /**
-     * translate the values
+     * translate the values; when streaming, each line is translated once and passed on to all outputs, when the data
+     * is buffered, the distinct values of each column are translated and the lines are only created when writing
      */
     @Override
     void translateValues(){
-        lines.forEach(this::translateLine);
+        if(isPipelined()) {
+            translateValuesPipelined();
+        }
+        else if(isStreaming()) {
+            ParallelLineTranslator<List<List<String>>> parallelLineTranslator = new ParallelLineTranslator<>(this::translateLine, this::addTranslatedLines, GlobalSettings.getTranslationThreads());
+            // second pass over the file: each line is translated and passed on to the output as soon as it is read
+            try {
+                readDataFile(header -> {}, parallelLineTranslator::addLine);
+                parallelLineTranslator.finish();
+            } finally {
+                parallelLineTranslator.shutdown();
+            }
+        }
+        else {
+            translateDistinctValues();
+        }
+    }
+
+    /**
+     * translate the distinct values of each column of the buffered lines, once for each version they are used with
+     * a column with more distinct values than lines, such as an identifier, gains nothing from this, so its values
+     * are translated per cell when writing
+     */
+    private void translateDistinctValues(){
+        int versionCount = columnPlan.getVersionCount();
+        int [] versionSlots = getVersionSlotsByCode();
+        distinctValueTranslations = new String[origHeaderList.size()][][];
+        for(int column=0; column<origHeaderList.size(); column++){
+            progressTracker.checkCancelled();
+            ColumnTranslator columnTranslator = columnPlan.getColumnTranslator(column);
+            long tableSize = (long) lines.getDistinctValueCount(column) * versionCount;
+            if(columnTranslator == null || tableSize > lines.size()){
+                continue;
+            }
+            // count the cells of each value and version, so the untranslated values are still counted per cell
+            int [] cells = new int[(int) tableSize];
+            for(int line=0; line<lines.size(); line++){
+                if(column < lines.getLineSize(line)){
+                    cells[lines.getCode(line, column) * versionCount + versionSlots[lines.getCode(line, versionColumnIndex())]]++;
+                }
+            }
+            String [][] translations = new String[(int) tableSize][];
+            for(int i=0; i<cells.length; i++){
+                if(cells[i] > 0){
+                    String version = lines.getValue(versionColumnIndex(), getVersionCode(versionSlots, i % versionCount));
+                    translations[i] = columnTranslator.translateValue(lines.getValue(column, i / versionCount), version, i % versionCount, cells[i]);
+                }
+            }
+            distinctValueTranslations[column] = translations;
+        }
+    }
+
+    /**
+     * creates the translated lines of the buffered data and passes them on to the outputs
+     * the outputs write the lines as they receive them, so the same lists are used for every line
+     */
+    @Override
+    void writeBufferedLines(){
+        int versionCount = columnPlan.getVersionCount();
+        int [] versionSlots = getVersionSlotsByCode();
+        List<List<String>> translatedLines = new ArrayList<>(outputFormatTypes.length);
+        for(int i=0; i<outputFormatTypes.length; i++){
+            translatedLines.add(new ArrayList<>());
+        }
+        for(int line=0; line<lines.size(); line++){
+            translatedLines.forEach(List::clear);
+            int versionCode = lines.getCode(line, versionColumnIndex());
+            int versionSlot = versionSlots[versionCode];
+            String version = lines.getValue(versionColumnIndex(), versionCode);
+            for(int column=0; column<lines.getLineSize(line); column++){
+                ColumnTranslator columnTranslator = columnPlan.getColumnTranslator(column);
+                if(columnTranslator != null){
+                    int code = lines.getCode(line, column);
+                    String value = lines.getValue(column, code);
+                    String [] translatedValues = distinctValueTranslations[column] != null ?
+                            distinctValueTranslations[column][code * versionCount + versionSlot] :
+                            columnTranslator.translateValue(value, version, versionSlot);
+                    for(int j=0; j<translatedLines.size(); j++){
+                        translatedLines.get(j).add(translatedValues == null ? value : translatedValues[j]);
+                    }
+                }
+            }
+            addTranslatedLines(translatedLines);
+        }
+    }
+
+    /**
+     * returns the version slot for each code in the dictionary of the protocol version column
+     * @return the version slots, indexed by code
+     */
+    private int [] getVersionSlotsByCode(){
+        int [] versionSlots = new int[lines.getDistinctValueCount(versionColumnIndex())];
+        for(int code=0; code<versionSlots.length; code++){
+            versionSlots[code] = columnPlan.getVersionSlot(lines.getValue(versionColumnIndex(), code));
+        }
+        return versionSlots;
+    }
+
+    /**
+     * returns the code of the protocol version which has a version slot
+     * @param versionSlots the version slot for each code
+     * @param versionSlot  the version slot
+     * @return the code of the version
+     */
+    private static int getVersionCode(int [] versionSlots, int versionSlot){
+        for(int code=0; code<versionSlots.length; code++){
+            if(versionSlots[code] == versionSlot){
+                return code;
+            }
+        }
+        throw new IllegalStateException("no protocol version for slot "+versionSlot);
+    }
+
+    /**
+     * translate the values in a pipeline; the second pass over the file is read on its own thread, while translator
+     * threads translate the lines and a writer thread passes them on to the outputs
+     */
+    private void translateValuesPipelined(){
+        TranslationPipeline<List<List<String>>> translationPipeline = new TranslationPipeline<>(this::translateLine, this::addTranslatedLines, GlobalSettings.getTranslationThreads());
+        // the progress shows where the batches are waiting, which tells whether reading or translating is the bottleneck
+        progressTracker.setDetail(() -> translationPipeline.getTranslateQueueDepth() + " batches waiting for a translator, "
+                + translationPipeline.getWriteQueueDepth() + " waiting to be written");
+        try {
+            translationPipeline.run(lineConsumer -> readDataFile(header -> {}, lineConsumer));
+        } finally {
+            progressTracker.setDetail(null);
+        }
+        translationPipeline.logStatistics();
     }
 
     /**
-     * translate a single line
+     * passes the translations of a line on to the outputs
+     * @param translatedLines the translated line for each output
+     */
+    private void addTranslatedLines(List<List<String>> translatedLines){
+        for(int i=0; i<outputDataList.size(); i++){
+            outputDataList.get(i).addTranslatedLine(translatedLines.get(i));
+        }
+        progressTracker.add(1);
+    }
+
+    /**
+     * translate a single line for all outputs; called from the translation threads
      * @param line line to translate
+     * @return the translated line for each output
      */
-    private void translateLine(List<String> line){
-        HousekeepingCodebookManager housekeepingCodebookManager = HousekeepingCodebookManager.getProtocolManager(runParameters);
-        ProtocolCodebookManager protocolCodebookManager = ProtocolCodebookManager.getProtocolManager(runParameters);
-        List<String> translatedLine = new ArrayList<>();
+    private List<List<String>> translateLine(List<String> line){
+        List<List<String>> translatedLines = new ArrayList<>(outputFormatTypes.length);
+        for(int i=0; i<outputFormatTypes.length; i++){
+            translatedLines.add(new ArrayList<>(line.size()));
+        }
 
-        // get the protocol version for this line
+        // get the protocol version for this line and its slot in the column plan
         String version = getProtocolVersionForLine(line);
+        int versionSlot = columnPlan.getVersionSlot(version);
 
         // for each item in the line
         for(int i=0; i<line.size(); i++){
-            // retrieve the original header name and check whether the concept should be added to the output
-            String origHeaderName = origHeaderList.get(i);
-            if(addDataToOutput(origHeaderName)){
-                // retrieve the no roman header name and the value that has to be translated
-                String headerName = noRomanHeaderList.get(i);
+            // the column plan has no translator for columns which should not be added to the output
+            ColumnTranslator columnTranslator = columnPlan.getColumnTranslator(i);
+            if(columnTranslator != null){
+                // add the translated value to the translated line of each output
                 String value = line.get(i);
-                String translatedValue;
-
-                // translate value using the housekeeping codebook or the protocol codebook
-                if (housekeepingCodebookManager.containsHeaderName(headerName)) {
-                    translatedValue = housekeepingCodebookManager.translateValue(headerName, value);
-                }
-                else {
-                    translatedValue = protocolCodebookManager.translateValue(headerName, value, version, outputFormatType);
+                String [] translatedValues = columnTranslator.translateValue(value, version, versionSlot);
+                for(int j=0; j<translatedLines.size(); j++){
+                    translatedLines.get(j).add(translatedValues == null ? value : translatedValues[j]);
                 }
-                // add the translated value to the translated line
-                translatedLine.add(translatedValue);
             }
         }
-        // store the translated line in the output
-        outputData.addTranslatedLine(translatedLine);
+        return translatedLines;
     }
 }
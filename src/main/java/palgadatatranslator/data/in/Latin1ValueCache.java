@@ -0,0 +1,108 @@
+/*
+ * Copyright 2017 NKI/AvL; VUmc 2018/2019/2020
+ *
+ * This file is part of PALGA Protocol Data Translator.
+ *
+ * PALGA Protocol Data Translator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PALGA Protocol Data Translator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PALGA Protocol Data Translator. If not, see <http://www.gnu.org/licenses/>
+ */
+
+package palgadatatranslator.data.in;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * turns ISO-8859-1 encoded values of a single column into Strings, reusing the String of a value seen before
+ * a column usually contains only a few distinct values, so most values are found by comparing their bytes with a
+ * remembered String and no String has to be created. Long values and the values after the cache is full are
+ * always created, which keeps the cache small for columns with free text or identifiers.
+ * The cache is used by a single reader thread, so it is not synchronized.
+ */
+class Latin1ValueCache {
+    private static final int maxEntries = 1024;
+    private static final int maxValueLength = 64;
+
+    // open addressing table, which is kept at most half full
+    private final String[] values = new String[maxEntries * 2];
+    private final int[] hashes = new int[maxEntries * 2];
+    private int entries = 0;
+
+    /**
+     * returns the String for a value
+     * @param bytes  the bytes containing the value
+     * @param offset offset of the value in the bytes
+     * @param length number of bytes of the value
+     * @return the value as a String
+     */
+    String get(byte[] bytes, int offset, int length) {
+        if(length == 0) {
+            return "";
+        }
+        if(length > maxValueLength) {
+            return new String(bytes, offset, length, StandardCharsets.ISO_8859_1);
+        }
+        int hash = hash(bytes, offset, length);
+        int mask = values.length - 1;
+        for(int i = hash & mask; ; i = (i + 1) & mask) {
+            String value = values[i];
+            if(value == null) {
+                value = new String(bytes, offset, length, StandardCharsets.ISO_8859_1);
+                if(entries < maxEntries) {
+                    values[i] = value;
+                    hashes[i] = hash;
+                    entries++;
+                }
+                return value;
+            }
+            if(hashes[i] == hash && matches(value, bytes, offset, length)) {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * calculates the hash of a value
+     * @param bytes  the bytes containing the value
+     * @param offset offset of the value in the bytes
+     * @param length number of bytes of the value
+     * @return the hash
+     */
+    private static int hash(byte[] bytes, int offset, int length) {
+        int hash = 0;
+        for(int i = offset; i < offset + length; i++) {
+            hash = 31 * hash + bytes[i];
+        }
+        // spread the higher bits, as the table index only uses the lower ones
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * returns whether a String equals the ISO-8859-1 encoded value
+     * @param value  the String
+     * @param bytes  the bytes containing the value
+     * @param offset offset of the value in the bytes
+     * @param length number of bytes of the value
+     * @return true/false
+     */
+    private static boolean matches(String value, byte[] bytes, int offset, int length) {
+        if(value.length() != length) {
+            return false;
+        }
+        for(int i = 0; i < length; i++) {
+            if(value.charAt(i) != (char) (bytes[offset + i] & 0xff)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2017 NKI/AvL; VUmc 2018/2019/2020
+ *
+ * This file is part of PALGA Protocol Data Translator.
+ *
+ * PALGA Protocol Data Translator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PALGA Protocol Data Translator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PALGA Protocol Data Translator. If not, see <http://www.gnu.org/licenses/>
+ */
+package palgadatatranslator.data.in;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * translates data lines on a fork/join pool while handing the translated lines to the output in their original order
+ *
+ * lines are collected in chunks; each chunk is translated as a separate task. The tasks are kept in a queue in the
+ * order in which they were submitted, which acts as reorder buffer: the output only receives the lines of the oldest
+ * chunk once that chunk is done. The number of chunks in the queue is limited, so a streaming run keeps a bounded
+ * number of lines in memory.
+ * With a single thread the lines are translated and passed on directly.
+ *
+ * @param <T> the type of a translated line
+ */
+class ParallelLineTranslator<T> {
+    private static final int chunkSize = 1024;
+    // number of chunks per thread that may be waiting to be written
+    private static final int chunksPerThread = 4;
+
+    private final Function<List<String>, T> lineTranslator;
+    private final Consumer<T> output;
+    private final ForkJoinPool forkJoinPool;
+    private final int maxPendingChunks;
+    private final Deque<ForkJoinTask<List<T>>> pendingChunks = new ArrayDeque<>();
+    private List<List<String>> currentChunk = new ArrayList<>(chunkSize);
+
+    /**
+     * create a new parallel line translator
+     * @param lineTranslator function which translates a single line; has to be safe to call from multiple threads
+     * @param output         receives the translated lines in the original order, always from the calling thread
+     * @param parallelism    number of translation threads
+     */
+    ParallelLineTranslator(Function<List<String>, T> lineTranslator, Consumer<T> output, int parallelism) {
+        this.lineTranslator = lineTranslator;
+        this.output = output;
+        this.forkJoinPool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+        this.maxPendingChunks = parallelism * chunksPerThread;
+    }
+
+    /**
+     * add a line which has to be translated
+     * the caller may reuse the line once this returns, so a line which is translated later is copied
+     * @param line the line to translate
+     */
+    void addLine(List<String> line) {
+        if(forkJoinPool == null) {
+            output.accept(lineTranslator.apply(line));
+            return;
+        }
+        currentChunk.add(List.copyOf(line));
+        if(currentChunk.size() == chunkSize) {
+            submitChunk();
+        }
+    }
+
+    /**
+     * translates the remaining lines and waits until all lines have been passed on to the output
+     */
+    void finish() {
+        if(forkJoinPool == null) {
+            return;
+        }
+        try {
+            if(!currentChunk.isEmpty()) {
+                submitChunk();
+            }
+            while(!pendingChunks.isEmpty()) {
+                writeOldestChunk();
+            }
+        } finally {
+            shutdown();
+        }
+    }
+
+    /**
+     * stops the translation threads; used when the lines are not finished, e.g. because the output failed or the run
+     * was cancelled
+     */
+    void shutdown() {
+        if(forkJoinPool != null) {
+            forkJoinPool.shutdownNow();
+        }
+    }
+
+    /**
+     * submits the current chunk to the pool; if too many chunks are waiting, the oldest one is written first
+     */
+    private void submitChunk() {
+        List<List<String>> chunk = currentChunk;
+        currentChunk = new ArrayList<>(chunkSize);
+        pendingChunks.addLast(forkJoinPool.submit(() -> translateChunk(chunk)));
+        while(pendingChunks.size() > maxPendingChunks) {
+            writeOldestChunk();
+        }
+    }
+
+    /**
+     * waits for the oldest chunk and passes its lines on to the output
+     */
+    private void writeOldestChunk() {
+        List<T> translatedChunk = pendingChunks.removeFirst().join();
+        translatedChunk.forEach(output);
+    }
+
+    /**
+     * translates the lines of a chunk
+     * @param chunk the lines to translate
+     * @return the translated lines, in the same order
+     */
+    private List<T> translateChunk(List<List<String>> chunk) {
+        List<T> translatedChunk = new ArrayList<>(chunk.size());
+        for(List<String> line : chunk) {
+            translatedChunk.add(lineTranslator.apply(line));
+        }
+        return translatedChunk;
+    }
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2017 NKI/AvL; VUmc 2018/2019/2020
+ *
+ * This file is part of PALGA Protocol Data Translator.
+ *
+ * PALGA Protocol Data Translator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PALGA Protocol Data Translator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PALGA Protocol Data Translator. If not, see <http://www.gnu.org/licenses/>
+ */
+
+package palgadatatranslator.data.in;
+
+/**
+ * receives the progress of a translation run
+ * the progress is reported from the thread which does the work, at most once per reporting interval, as well as when
+ * a phase starts and ends; a listener which updates a user interface has to pass it on to the user interface thread
+ */
+public interface ProgressListener {
+
+    /**
+     * called when the progress of the run changed
+     * @param progress the progress
+     */
+    void progressChanged(TranslationProgress progress);
+}
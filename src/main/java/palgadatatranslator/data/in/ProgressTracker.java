@@ -0,0 +1,149 @@
+/*
+ * Copyright 2017 NKI/AvL; VUmc 2018/2019/2020
+ *
+ * This file is part of PALGA Protocol Data Translator.
+ *
+ * PALGA Protocol Data Translator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PALGA Protocol Data Translator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PALGA Protocol Data Translator. If not, see <http://www.gnu.org/licenses/>
+ */
+
+package palgadatatranslator.data.in;
+
+import palgadatatranslator.utils.CancellationToken;
+import palgadatatranslator.utils.enumerate.TranslationPhase;
+
+import java.util.function.Supplier;
+
+/**
+ * keeps track of the progress of a translation run and reports it to a listener
+ * the work of a phase is counted by one thread at a time, e.g. the reader or the thread which passes the translated
+ * lines on to the outputs. Counting only adds to a field; the time is only checked every few hundred rows and the
+ * progress is only reported once the reporting interval has passed, so the tracker costs no noticeable throughput
+ *
+ * the tracker also stops a cancelled run: whenever the time is checked, so once per batch of rows, and at the start
+ * of each phase, it checks whether the run was cancelled
+ */
+class ProgressTracker {
+    // the number of rows after which the time is checked
+    private static final int checkInterval = 256;
+
+    private final ProgressListener progressListener;
+    private final long reportIntervalNanos;
+    private final CancellationToken cancellationToken;
+
+    private TranslationPhase phase;
+    private long total;
+    private long phaseStart;
+    private long processed;
+    private long nextCheck;
+    private long nextReport;
+    private volatile Supplier<String> detailSupplier;
+    private volatile TranslationProgress progress;
+
+    /**
+     * new progress tracker
+     * @param progressListener     the listener, or null if the progress is only kept
+     * @param reportIntervalMillis the minimal time between two reports within a phase
+     * @param cancellationToken    token which tells whether the run was cancelled
+     */
+    ProgressTracker(ProgressListener progressListener, long reportIntervalMillis, CancellationToken cancellationToken) {
+        this.progressListener = progressListener;
+        this.reportIntervalNanos = reportIntervalMillis * 1000000L;
+        this.cancellationToken = cancellationToken;
+    }
+
+    /**
+     * starts a phase and reports it
+     * @param phase the phase
+     * @param total the number the phase will process, or -1 if that is not known
+     */
+    void startPhase(TranslationPhase phase, long total) {
+        cancellationToken.checkCancelled();
+        this.phase = phase;
+        this.total = total;
+        this.processed = 0;
+        this.nextCheck = checkInterval;
+        this.detailSupplier = null;
+        this.phaseStart = System.nanoTime();
+        report(phaseStart);
+    }
+
+    /**
+     * adds to the number processed in the current phase
+     * @param count the number processed
+     */
+    void add(long count) {
+        processed += count;
+        if(processed >= nextCheck) {
+            nextCheck = processed + checkInterval;
+            cancellationToken.checkCancelled();
+            long now = System.nanoTime();
+            if(now >= nextReport) {
+                report(now);
+            }
+        }
+    }
+
+    /**
+     * ends the current phase and reports its final progress
+     */
+    void finishPhase() {
+        report(System.nanoTime());
+    }
+
+    /**
+     * adds details to the reports of the current phase, e.g. the number of batches waiting in the pipeline; the
+     * details are asked for on every report, so they show the state at that moment
+     * @param detailSupplier supplies the details, or null to stop adding them; only called when reporting
+     */
+    void setDetail(Supplier<String> detailSupplier) {
+        this.detailSupplier = detailSupplier;
+    }
+
+    /**
+     * stops the run if it was cancelled; for work which is not counted in rows
+     */
+    void checkCancelled() {
+        cancellationToken.checkCancelled();
+    }
+
+    /**
+     * returns the token which tells whether the run was cancelled
+     * @return the cancellation token
+     */
+    CancellationToken getCancellationToken() {
+        return cancellationToken;
+    }
+
+    /**
+     * returns the last reported progress
+     * @return the progress, or null if no phase was started
+     */
+    TranslationProgress getProgress() {
+        return progress;
+    }
+
+    /**
+     * reports the progress to the listener
+     * @param now the current time
+     */
+    private void report(long now) {
+        nextReport = now + reportIntervalNanos;
+        Supplier<String> currentDetailSupplier = detailSupplier;
+        String detail = currentDetailSupplier == null ? null : currentDetailSupplier.get();
+        progress = new TranslationProgress(phase, processed, total, now - phaseStart, detail);
+        if(progressListener != null) {
+            progressListener.progressChanged(progress);
+        }
+    }
+}
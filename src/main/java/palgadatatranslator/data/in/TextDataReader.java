@@ -0,0 +1,211 @@
+/*
+ * Copyright 2017 NKI/AvL; VUmc 2018/2019/2020
+ *
+ * This file is part of PALGA Protocol Data Translator.
+ *
+ * PALGA Protocol Data Translator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PALGA Protocol Data Translator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PALGA Protocol Data Translator. If not, see <http://www.gnu.org/licenses/>
+ */
+
+package palgadatatranslator.data.in;
+
+import palgadatatranslator.settings.RunParameters;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * reads a tab separated text file, or tab separated text from standard input
+ *
+ * the file is ISO-8859-1 encoded, so each byte is a single character. Instead of decoding each line into a String and
+ * splitting it, the lines and values are found in the bytes as they are read from the channel, and each value is
+ * turned into a String by the value cache of its column, which reuses the Strings of values seen before. The values
+ * are cleaned while they are still bytes and added to a data row which is reused for every line.
+ * Lines end with a line feed, a carriage return or both, like they do for BufferedReader.readLine.
+ */
+class TextDataReader implements DataReader {
+    private static final int bufferSize = 1 << 16;
+
+    private final RunParameters runParameters;
+
+    /**
+     * new text data reader
+     * @param runParameters settings for this run
+     */
+    TextDataReader(RunParameters runParameters){
+        this.runParameters = runParameters;
+    }
+
+    /**
+     * reads the data file, passing the header and each of the data lines to the consumers
+     * @param headerConsumer consumer for the names in the header line
+     * @param lineConsumer   consumer for the values in the data lines
+     */
+    @Override
+    public void read(Consumer<List<String>> headerConsumer, Consumer<List<String>> lineConsumer){
+        ReadableByteChannel channel;
+        try {
+            channel = runParameters.isStandardInput() ? Channels.newChannel(System.in) : FileChannel.open(Path.of(runParameters.getInputFileName()));
+        } catch(IOException e){
+            throw new RuntimeException("A fatal exception occurred whilst reading the dataset: "+e.getMessage());
+        }
+        try(channel) {
+            new LineTokenizer(headerConsumer, lineConsumer).read(channel);
+        } catch(IOException e){
+            throw new RuntimeException("A fatal exception occurred whilst reading the dataset: "+e.getMessage());
+        }
+    }
+
+    /**
+     * finds the lines and values in the bytes of a single read of the data file
+     */
+    private static class LineTokenizer {
+        private final Consumer<List<String>> headerConsumer;
+        private final Consumer<List<String>> lineConsumer;
+        private final List<Latin1ValueCache> valueCaches = new ArrayList<>();
+        // reused for every data line
+        private final DataRow row = new DataRow();
+        private boolean headerRead = false;
+        // whether the last line ended with a carriage return, in which case a directly following line feed belongs to it
+        private boolean lastLineEndedWithCarriageReturn = false;
+
+        /**
+         * new line tokenizer
+         * @param headerConsumer consumer for the names in the header line
+         * @param lineConsumer   consumer for the values in the data lines
+         */
+        private LineTokenizer(Consumer<List<String>> headerConsumer, Consumer<List<String>> lineConsumer){
+            this.headerConsumer = headerConsumer;
+            this.lineConsumer = lineConsumer;
+        }
+
+        /**
+         * reads the channel until its end, passing on each line
+         * @param channel the channel to read
+         * @throws IOException when the channel cannot be read
+         */
+        private void read(ReadableByteChannel channel) throws IOException {
+            byte [] buffer = new byte[bufferSize];
+            // the bytes which have been read but not handled yet
+            int start = 0;
+            int end = 0;
+            while(true){
+                // handle the complete lines in the buffer
+                for(int i=start; i<end; i++){
+                    byte b = buffer[i];
+                    if(b == '\n' || b == '\r'){
+                        if(b == '\n' && lastLineEndedWithCarriageReturn && i == start){
+                            lastLineEndedWithCarriageReturn = false;
+                        }
+                        else {
+                            handleLine(buffer, start, i);
+                            lastLineEndedWithCarriageReturn = b == '\r';
+                        }
+                        start = i+1;
+                    }
+                }
+                // move the incomplete line to the start of the buffer, making it larger if the line doesn't fit
+                if(start > 0){
+                    System.arraycopy(buffer, start, buffer, 0, end-start);
+                    end -= start;
+                    start = 0;
+                }
+                else if(end == buffer.length){
+                    buffer = Arrays.copyOf(buffer, buffer.length*2);
+                }
+                int count = channel.read(ByteBuffer.wrap(buffer, end, buffer.length-end));
+                if(count < 0){
+                    break;
+                }
+                end += count;
+            }
+            // the last line does not have to end with a line break
+            if(end > 0){
+                handleLine(buffer, 0, end);
+            }
+            if(!headerRead){
+                throw new IOException("the file is empty");
+            }
+        }
+
+        /**
+         * splits a line into its values and passes it on to the header or line consumer
+         * @param buffer the bytes containing the line
+         * @param from   offset of the first byte of the line
+         * @param to     offset just after the last byte of the line
+         */
+        private void handleLine(byte [] buffer, int from, int to){
+            if(!headerRead){
+                headerRead = true;
+                headerConsumer.accept(splitHeader(buffer, from, to));
+                return;
+            }
+            row.clear();
+            int valueStart = from;
+            for(int i=from; i<=to; i++){
+                if(i == to || buffer[i] == '\t'){
+                    addValue(buffer, valueStart, i);
+                    valueStart = i+1;
+                }
+            }
+            lineConsumer.accept(row);
+        }
+
+        /**
+         * cleans a value and adds it to the row; like DataRow.clean, the value is trimmed and the quotes that excel
+         * sometimes adds are removed, but by moving the bounds of the value, so no String is created for it
+         * @param buffer the bytes containing the value
+         * @param from   offset of the first byte of the value
+         * @param to     offset just after the last byte of the value
+         */
+        private void addValue(byte [] buffer, int from, int to){
+            // String.trim removes all characters up to and including the space
+            while(from < to && (buffer[from] & 0xff) <= ' '){
+                from++;
+            }
+            while(to > from && (buffer[to-1] & 0xff) <= ' '){
+                to--;
+            }
+            if(to-from > 1 && buffer[from] == '"' && buffer[to-1] == '"'){
+                from++;
+                to--;
+            }
+            int column = row.size();
+            if(column == valueCaches.size()){
+                valueCaches.add(new Latin1ValueCache());
+            }
+            row.addValue(valueCaches.get(column).get(buffer, from, to-from));
+        }
+
+        /**
+         * splits the header line into its names; like String.split, empty names at the end of the line are removed
+         * @param buffer the bytes containing the line
+         * @param from   offset of the first byte of the line
+         * @param to     offset just after the last byte of the line
+         * @return the names in the header
+         */
+        private List<String> splitHeader(byte [] buffer, int from, int to){
+            String header = new String(buffer, from, to-from, StandardCharsets.ISO_8859_1);
+            return Arrays.asList(header.split("\t"));
+        }
+    }
+}
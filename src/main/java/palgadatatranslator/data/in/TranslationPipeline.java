@@ -0,0 +1,318 @@
+/*
+ * Copyright 2017 NKI/AvL; VUmc 2018/2019/2020
+ *
+ * This file is part of PALGA Protocol Data Translator.
+ *
+ * PALGA Protocol Data Translator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PALGA Protocol Data Translator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PALGA Protocol Data Translator. If not, see <http://www.gnu.org/licenses/>
+ */
+
+package palgadatatranslator.data.in;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import palgadatatranslator.utils.TranslationCancelledException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * translates data lines in a pipeline: a reader thread collects the lines in batches, translator threads translate
+ * the batches and a writer thread passes the translated lines on to the output in their original order
+ *
+ * the stages are connected by bounded queues. Each batch is put on the translate queue, from which the translators
+ * take it, and on the write queue, in which the batches stay in their original order until they are translated and
+ * written. As the write queue is bounded, the reader waits when too many batches are in flight, so memory use is
+ * capped however fast the file can be read.
+ * For each stage the time spent working and the time spent waiting for the other stages is measured, which shows
+ * which stage is the bottleneck.
+ *
+ * @param <T> the type of a translated line
+ */
+class TranslationPipeline<T> {
+    private static final Logger logger = LogManager.getLogger(TranslationPipeline.class.getName());
+    private static final int batchSize = 1024;
+    // number of batches per translator that may be in flight
+    private static final int batchesPerTranslator = 4;
+
+    private final Function<List<String>, T> lineTranslator;
+    private final Consumer<T> output;
+    private final int translators;
+    private final BlockingQueue<Batch<T>> translateQueue;
+    private final BlockingQueue<Batch<T>> writeQueue;
+    private final Batch<T> endOfData = new Batch<>(null);
+
+    private final Stage readStage = new Stage("read", 1);
+    private final Stage translateStage;
+    private final Stage writeStage = new Stage("write", 1);
+    private final LongAccumulator maxTranslateQueueDepth = new LongAccumulator(Math::max, 0);
+    private final LongAccumulator maxWriteQueueDepth = new LongAccumulator(Math::max, 0);
+
+    // only used by the reader thread
+    private List<List<String>> currentBatch = new ArrayList<>(batchSize);
+
+    /**
+     * create a new translation pipeline
+     * @param lineTranslator function which translates a single line; has to be safe to call from multiple threads
+     * @param output         receives the translated lines in the original order, always from the writer thread
+     * @param translators    number of translator threads
+     */
+    TranslationPipeline(Function<List<String>, T> lineTranslator, Consumer<T> output, int translators) {
+        this.lineTranslator = lineTranslator;
+        this.output = output;
+        this.translators = Math.max(1, translators);
+        this.translateQueue = new ArrayBlockingQueue<>(this.translators * batchesPerTranslator + this.translators);
+        this.writeQueue = new ArrayBlockingQueue<>(this.translators * batchesPerTranslator + 1);
+        this.translateStage = new Stage("translate", this.translators);
+    }
+
+    /**
+     * runs the pipeline and waits until all lines have been passed on to the output
+     * @param reader reads the data lines, passing each of them on to the consumer it receives
+     */
+    void run(Consumer<Consumer<List<String>>> reader) {
+        ExecutorService executorService = Executors.newFixedThreadPool(translators + 2);
+        CompletionService<Void> completionService = new ExecutorCompletionService<>(executorService);
+        try {
+            completionService.submit(() -> readLines(reader));
+            for(int i = 0; i < translators; i++) {
+                completionService.submit(this::translateBatches);
+            }
+            completionService.submit(this::writeBatches);
+            // when one of the stages fails, the other stages are interrupted by shutting down the pool
+            for(int i = 0; i < translators + 2; i++) {
+                completionService.take().get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("A severe error occurred while translating the data: the translation was interrupted");
+        } catch (ExecutionException e) {
+            // a cancelled run is stopped by the output of the writer stage, and is not an error
+            if(e.getCause() instanceof TranslationCancelledException translationCancelledException) {
+                throw translationCancelledException;
+            }
+            throw new RuntimeException("A severe error occurred while translating the data: " + e.getCause().getMessage());
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    /**
+     * returns the number of batches waiting for a translator
+     * @return the number of batches
+     */
+    int getTranslateQueueDepth() {
+        return translateQueue.size();
+    }
+
+    /**
+     * returns the number of batches waiting to be written, including those which are still being translated
+     * @return the number of batches
+     */
+    int getWriteQueueDepth() {
+        return writeQueue.size();
+    }
+
+    /**
+     * logs the throughput of each stage and the maximum depth of the queues
+     */
+    void logStatistics() {
+        for(Stage stage : List.of(readStage, translateStage, writeStage)) {
+            logger.log(Level.INFO, stage.getSummary());
+        }
+        logger.log(Level.INFO, "Pipeline queues: at most {} of {} batches waiting for a translator, {} of {} batches waiting to be written",
+                maxTranslateQueueDepth.get(), translateQueue.remainingCapacity() + translateQueue.size(),
+                maxWriteQueueDepth.get(), writeQueue.remainingCapacity() + writeQueue.size());
+    }
+
+    /**
+     * the reader stage: reads the lines and submits them in batches
+     * @param reader reads the data lines
+     * @return nothing
+     * @throws InterruptedException when the pipeline is stopped
+     */
+    private Void readLines(Consumer<Consumer<List<String>>> reader) throws InterruptedException {
+        long start = System.nanoTime();
+        reader.accept(this::addLine);
+        if(!currentBatch.isEmpty()) {
+            submitBatch(new Batch<>(currentBatch));
+        }
+        // one end marker for the writer and one for each translator
+        submitBatch(endOfData);
+        for(int i = 1; i < translators; i++) {
+            putTranslateQueue(endOfData);
+        }
+        readStage.addTime(System.nanoTime() - start);
+        return null;
+    }
+
+    /**
+     * adds a copy of a line to the current batch, which is submitted once it is full; the reader may reuse the line
+     * @param line the line to add
+     */
+    private void addLine(List<String> line) {
+        currentBatch.add(List.copyOf(line));
+        if(currentBatch.size() == batchSize) {
+            try {
+                submitBatch(new Batch<>(currentBatch));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("the translation was interrupted");
+            }
+            currentBatch = new ArrayList<>(batchSize);
+        }
+    }
+
+    /**
+     * puts a batch on the write queue and the translate queue; waits when either queue is full
+     * @param batch the batch
+     * @throws InterruptedException when the pipeline is stopped
+     */
+    private void submitBatch(Batch<T> batch) throws InterruptedException {
+        long start = System.nanoTime();
+        writeQueue.put(batch);
+        putTranslateQueue(batch);
+        readStage.addWaitTime(System.nanoTime() - start);
+        if(batch != endOfData) {
+            readStage.addLines(batch.lines.size());
+        }
+        maxWriteQueueDepth.accumulate(writeQueue.size());
+        maxTranslateQueueDepth.accumulate(translateQueue.size());
+    }
+
+    /**
+     * puts a batch on the translate queue
+     * @param batch the batch
+     * @throws InterruptedException when the pipeline is stopped
+     */
+    private void putTranslateQueue(Batch<T> batch) throws InterruptedException {
+        translateQueue.put(batch);
+    }
+
+    /**
+     * the translator stage: translates batches until the end of the data is reached
+     * @return nothing
+     * @throws InterruptedException when the pipeline is stopped
+     */
+    private Void translateBatches() throws InterruptedException {
+        long start = System.nanoTime();
+        while(true) {
+            long waitStart = System.nanoTime();
+            Batch<T> batch = translateQueue.take();
+            translateStage.addWaitTime(System.nanoTime() - waitStart);
+            if(batch == endOfData) {
+                break;
+            }
+            List<T> translatedLines = new ArrayList<>(batch.lines.size());
+            for(List<String> line : batch.lines) {
+                translatedLines.add(lineTranslator.apply(line));
+            }
+            batch.translatedLines.complete(translatedLines);
+            translateStage.addLines(translatedLines.size());
+        }
+        translateStage.addTime(System.nanoTime() - start);
+        return null;
+    }
+
+    /**
+     * the writer stage: passes the translated lines on to the output, in the order in which the batches were read
+     * @return nothing
+     * @throws InterruptedException when the pipeline is stopped
+     * @throws ExecutionException   never, as batches are only completed normally
+     */
+    private Void writeBatches() throws InterruptedException, ExecutionException {
+        long start = System.nanoTime();
+        while(true) {
+            long waitStart = System.nanoTime();
+            Batch<T> batch = writeQueue.take();
+            if(batch == endOfData) {
+                writeStage.addWaitTime(System.nanoTime() - waitStart);
+                break;
+            }
+            List<T> translatedLines = batch.translatedLines.get();
+            writeStage.addWaitTime(System.nanoTime() - waitStart);
+            translatedLines.forEach(output);
+            writeStage.addLines(translatedLines.size());
+        }
+        writeStage.addTime(System.nanoTime() - start);
+        return null;
+    }
+
+    /**
+     * a batch of lines, which is completed once its lines are translated
+     * @param <T> the type of a translated line
+     */
+    private static class Batch<T> {
+        private final List<List<String>> lines;
+        private final CompletableFuture<List<T>> translatedLines = new CompletableFuture<>();
+
+        /**
+         * new batch
+         * @param lines the lines of the batch
+         */
+        private Batch(List<List<String>> lines) {
+            this.lines = lines;
+        }
+    }
+
+    /**
+     * the number of lines a stage handled and the time its threads spent in total and waiting for other stages
+     */
+    private static class Stage {
+        private final String name;
+        private final int threads;
+        private final LongAdder lines = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+        private final LongAdder waitNanos = new LongAdder();
+
+        /**
+         * new stage
+         * @param name    name of the stage
+         * @param threads number of threads of the stage
+         */
+        private Stage(String name, int threads) {
+            this.name = name;
+            this.threads = threads;
+        }
+
+        private void addLines(int count) {
+            lines.add(count);
+        }
+
+        private void addTime(long elapsedNanos) {
+            nanos.add(elapsedNanos);
+        }
+
+        private void addWaitTime(long elapsedNanos) {
+            waitNanos.add(elapsedNanos);
+        }
+
+        /**
+         * returns a summary of the stage; the lines per second are those the stage could handle if it never had
+         * to wait, so the stage with the lowest number is the bottleneck
+         * @return the summary
+         */
+        private String getSummary() {
+            long busyNanos = Math.max(1, nanos.sum() - waitNanos.sum());
+            long linesPerSecond = lines.sum() * threads * 1000000000L / busyNanos;
+            return String.format("Pipeline %s: %d lines using %d thread(s), %.1f ms busy, %.1f ms waiting, %d lines/s",
+                    name, lines.sum(), threads, busyNanos / 1000000.0, waitNanos.sum() / 1000000.0, linesPerSecond);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2017 NKI/AvL; VUmc 2018/2019/2020
+ *
+ * This file is part of PALGA Protocol Data Translator.
+ *
+ * PALGA Protocol Data Translator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PALGA Protocol Data Translator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PALGA Protocol Data Translator. If not, see <http://www.gnu.org/licenses/>
+ */
+
+package palgadatatranslator.data.in;
+
+import palgadatatranslator.utils.enumerate.TranslationPhase;
+
+/**
+ * the progress of a translation run at one moment: the current phase, how much of it has been processed and how fast
+ * a progress is immutable, so it can be passed on to another thread, e.g. the JavaFX Application Thread
+ */
+public class TranslationProgress {
+    private final TranslationPhase phase;
+    private final long processed;
+    private final long total;
+    private final long elapsedNanos;
+    private final String detail;
+
+    /**
+     * new translation progress
+     * @param phase        the current phase
+     * @param processed    the number of rows, columns or versions processed in the phase
+     * @param total        the number the phase will process, or -1 if that is not known
+     * @param elapsedNanos the time since the phase started
+     */
+    TranslationProgress(TranslationPhase phase, long processed, long total, long elapsedNanos) {
+        this(phase, processed, total, elapsedNanos, null);
+    }
+
+    /**
+     * new translation progress
+     * @param phase        the current phase
+     * @param processed    the number of rows, columns or versions processed in the phase
+     * @param total        the number the phase will process, or -1 if that is not known
+     * @param elapsedNanos the time since the phase started
+     * @param detail       details about the state of the phase, or null if there are none
+     */
+    TranslationProgress(TranslationPhase phase, long processed, long total, long elapsedNanos, String detail) {
+        this.phase = phase;
+        this.processed = processed;
+        this.total = total;
+        this.elapsedNanos = elapsedNanos;
+        this.detail = detail;
+    }
+
+    /**
+     * returns the current phase
+     * @return the phase
+     */
+    public TranslationPhase getPhase() {
+        return phase;
+    }
+
+    /**
+     * returns the number of rows, columns or versions processed in the phase, depending on its unit
+     * @return the number processed
+     */
+    public long getProcessed() {
+        return processed;
+    }
+
+    /**
+     * returns the number the phase will process
+     * @return the total, or -1 if it is not known
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * returns details about the state of the phase, such as the number of batches waiting in the pipeline
+     * @return the details, or null if there are none
+     */
+    public String getDetail() {
+        return detail;
+    }
+
+    /**
+     * returns the part of the phase which has been processed
+     * @return a fraction between 0 and 1, or -1 if the total is not known
+     */
+    public double getFraction() {
+        return total > 0 ? Math.min(1.0, (double) processed / total) : -1;
+    }
+
+    /**
+     * returns how many rows, columns or versions were processed per second since the phase started
+     * @return the number per second
+     */
+    public long getPerSecond() {
+        return elapsedNanos > 0 ? processed * 1000000000L / elapsedNanos : 0;
+    }
+
+    /**
+     * returns the estimated time left for the phase, based on the speed so far
+     * @return the number of seconds, or -1 if it cannot be estimated
+     */
+    public long getSecondsLeft() {
+        long perSecond = getPerSecond();
+        if(total < 0 || perSecond == 0) {
+            return -1;
+        }
+        return Math.max(0, total - processed) / perSecond;
+    }
+
+    /**
+     * returns the progress as a line of text, such as
+     * Translating: 120000 of 500000 rows (24%), 40000 rows/s, about 9 s left
+     * @return the text
+     */
+    @Override
+    public String toString() {
+        StringBuilder stringBuilder = new StringBuilder(phase.getPrettyString()).append(": ").append(processed);
+        if(total >= 0) {
+            stringBuilder.append(" of ").append(total);
+        }
+        stringBuilder.append(" ").append(phase.getUnit());
+        if(total > 0) {
+            stringBuilder.append(" (").append(Math.round(getFraction() * 100)).append("%)");
+        }
+        stringBuilder.append(", ").append(getPerSecond()).append(" ").append(phase.getUnit()).append("/s");
+        if(getSecondsLeft() >= 0) {
+            stringBuilder.append(", about ").append(getSecondsLeft()).append(" s left");
+        }
+        if(detail != null) {
+            stringBuilder.append(" (").append(detail).append(")");
+        }
+        return stringBuilder.toString();
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2017 NKI/AvL; VUmc 2018/2019/2020
+ *
+ * This file is part of PALGA Protocol Data Translator.
+ *
+ * PALGA Protocol Data Translator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PALGA Protocol Data Translator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PALGA Protocol Data Translator. If not, see <http://www.gnu.org/licenses/>
+ */
+
+package palgadatatranslator.data.in;
+
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler.SheetContentsHandler;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+import palgadatatranslator.settings.RunParameters;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * reads the first sheet of an Excel workbook (xlsx)
+ * the sheet is parsed with the event model of POI, which passes the cells on as they are read, so only the current
+ * row is kept in memory instead of the whole workbook. The values are formatted as they are shown in Excel
+ */
+class XlsxDataReader implements DataReader {
+    private final RunParameters runParameters;
+
+    /**
+     * new xlsx data reader
+     * @param runParameters settings for this run
+     */
+    XlsxDataReader(RunParameters runParameters){
+        this.runParameters = runParameters;
+    }
+
+    /**
+     * reads the data file, passing the header and each of the data lines to the consumers
+     * @param headerConsumer consumer for the names in the header line
+     * @param lineConsumer   consumer for the values in the data lines
+     */
+    @Override
+    public void read(Consumer<List<String>> headerConsumer, Consumer<List<String>> lineConsumer){
+        OPCPackage opcPackage = null;
+        try {
+            // opened read only, so the package is reverted instead of closed, as closing would save it
+            opcPackage = OPCPackage.open(new File(runParameters.getInputFileName()), PackageAccess.READ);
+            XSSFReader xssfReader = new XSSFReader(opcPackage);
+            ReadOnlySharedStringsTable sharedStringsTable = new ReadOnlySharedStringsTable(opcPackage, false);
+            StylesTable stylesTable = xssfReader.getStylesTable();
+            Iterator<InputStream> sheets = xssfReader.getSheetsData();
+            if(!sheets.hasNext()){
+                throw new RuntimeException("A fatal exception occurred whilst reading the dataset: the workbook has no sheets");
+            }
+            try(InputStream sheet = sheets.next()) {
+                RowHandler rowHandler = new RowHandler(headerConsumer, lineConsumer);
+                XMLReader xmlReader = XMLHelper.newXMLReader();
+                xmlReader.setContentHandler(new XSSFSheetXMLHandler(stylesTable, null, sharedStringsTable, rowHandler, new DataFormatter(), false));
+                xmlReader.parse(new InputSource(sheet));
+            }
+        } catch(RuntimeException e){
+            throw e;
+        } catch(Exception e){
+            throw new RuntimeException("A fatal exception occurred whilst reading the dataset: "+e.getMessage());
+        } finally {
+            if(opcPackage != null){
+                opcPackage.revert();
+            }
+        }
+    }
+
+    /**
+     * collects the cells of a row and passes the row on once it ends
+     * the first row with values is the header; empty rows are skipped and the data lines are padded to the size of
+     * the header, as Excel does not store empty cells
+     */
+    private static class RowHandler implements SheetContentsHandler {
+        private final Consumer<List<String>> headerConsumer;
+        private final Consumer<List<String>> lineConsumer;
+        // reused for every row; the header is copied before it is passed on
+        private final DataRow row = new DataRow();
+        private int headerSize = -1;
+
+        /**
+         * new row handler
+         * @param headerConsumer consumer for the names in the header line
+         * @param lineConsumer   consumer for the values in the data lines
+         */
+        private RowHandler(Consumer<List<String>> headerConsumer, Consumer<List<String>> lineConsumer){
+            this.headerConsumer = headerConsumer;
+            this.lineConsumer = lineConsumer;
+        }
+
+        @Override
+        public void startRow(int rowNum){
+            row.clear();
+        }
+
+        @Override
+        public void endRow(int rowNum){
+            if(row.isEmpty()){
+                return;
+            }
+            if(headerSize < 0){
+                headerSize = row.size();
+                headerConsumer.accept(row.copy());
+            }
+            else {
+                while(row.size() < headerSize){
+                    row.addValue("");
+                }
+                lineConsumer.accept(row);
+            }
+        }
+
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment){
+            // cells which are empty are missing, so fill the gap up to the column of this cell
+            int column = getColumnIndex(cellReference);
+            while(row.size() < column){
+                row.addValue("");
+            }
+            // the names in the header are used as they are, the values in the data lines are cleaned
+            row.addValue(headerSize < 0 ? formattedValue : DataRow.clean(formattedValue));
+        }
+
+        /**
+         * returns the index of the column of a cell reference such as AB12
+         * this is called for every cell, so the letters are decoded here instead of parsing the whole reference
+         * @param cellReference the reference of the cell
+         * @return the zero based index of the column
+         */
+        private static int getColumnIndex(String cellReference){
+            int column = 0;
+            for(int i=0; i<cellReference.length(); i++){
+                char c = cellReference.charAt(i);
+                if(c < 'A' || c > 'Z'){
+                    break;
+                }
+                column = column * 26 + (c - 'A' + 1);
+            }
+            return column - 1;
+        }
+    }
+}
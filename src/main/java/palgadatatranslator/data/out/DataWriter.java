@@ -0,0 +1,56 @@
+/*
+ * Copyright 2017 NKI/AvL; VUmc 2018/2019/2020
+ *
+ * This file is part of PALGA Protocol Data Translator.
+ *
+ * PALGA Protocol Data Translator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PALGA Protocol Data Translator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PALGA Protocol Data Translator. If not, see <http://www.gnu.org/licenses/>
+ */
+
+package palgadatatranslator.data.out;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * writes the translated data to a file of a certain type, one line at a time
+ * the header is written first, followed by the data lines in the order in which they should appear in the file
+ */
+interface DataWriter {
+
+    /**
+     * opens the output and writes the header
+     * @param header the translated names in the header
+     * @throws IOException when the output cannot be opened or written
+     */
+    void open(List<String> header) throws IOException;
+
+    /**
+     * writes a single translated line
+     * @param line the line to write
+     * @throws IOException when the line cannot be written
+     */
+    void writeLine(List<String> line) throws IOException;
+
+    /**
+     * completes and closes the output
+     * @throws IOException when the output cannot be completed
+     */
+    void close() throws IOException;
+
+    /**
+     * closes the output without completing it and deletes what was written so far
+     * @throws IOException when the output cannot be closed or deleted
+     */
+    void discard() throws IOException;
+}
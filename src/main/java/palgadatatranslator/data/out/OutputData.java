@@ -28,12 +28,14 @@ public interface OutputData {
     /**
      * store the original header and the translated header
      * @param origHeaderName original header name
-     * @param translatedName translated header name
+     * @param translatedName translated header name, without the roman number of a repeated column
+     * @param repeat         the index of the roman number of a repeated column, or 0 if the column is not repeated
      */
-    void addHeaderValue(String origHeaderName, String translatedName);
+    void addHeaderValue(String origHeaderName, String translatedName, int repeat);
 
     /**
      * store a translated data line
+     * the caller may reuse the list for the next line, so the line has to be written or copied
      * @param line line with translated data
      */
     void addTranslatedLine(List<String> line);
@@ -42,4 +44,9 @@ public interface OutputData {
      * write the data
      */
     void writeData();
+
+    /**
+     * stop writing and delete the partially written output; used when the run is cancelled
+     */
+    void discardData();
 }
@@ -20,17 +20,23 @@
 package palgadatatranslator.data.out;
 
 import palgadatatranslator.settings.RunParameters;
+import palgadatatranslator.utils.enumerate.OutputFileType;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
 /**
  * Defaults for OutputData
+ * the lines are written by a data writer as soon as they are added, so the translated data is never kept in memory;
+ * the subclasses decide which header is written and which lines are written for a translated line
  */
 abstract class OutputDataDefault implements OutputData{
     List<OutputHeaderItem> headerList = new ArrayList<>();
     RunParameters runParameters;
 
+    private DataWriter dataWriter;
+
     /**
      * constructor
      * @param runParameters run parameters
@@ -39,4 +45,127 @@ abstract class OutputDataDefault implements OutputData{
         this.runParameters = runParameters;
     }
 
+    /**
+     * store the original header and the translated header
+     * @param origHeaderName original headerName
+     * @param translatedName translated headerName, without the roman number of a repeated column
+     * @param repeat         the index of the roman number of a repeated column, or 0 if the column is not repeated
+     */
+    @Override
+    public void addHeaderValue(String origHeaderName, String translatedName, int repeat){
+        headerList.add(new OutputHeaderItem(origHeaderName, translatedName, repeat));
+    }
+
+    /**
+     * write a translated line, opening the output file for the first line
+     * @param line the line to add
+     */
+    @Override
+    public void addTranslatedLine(List<String> line) {
+        try {
+            if (dataWriter == null) {
+                openWriter();
+            }
+            writeTranslatedLine(dataWriter, line);
+        } catch (Exception e){
+            closeWriter();
+            throw new RuntimeException("A severe error occurred while writing the output file: "+e.getMessage());
+        }
+    }
+
+    /**
+     * completes the output file; the lines have already been written, but the file is also written if there were no
+     * data lines
+     */
+    @Override
+    public void writeData(){
+        try {
+            if (dataWriter == null) {
+                openWriter();
+            }
+        } catch (Exception e){
+            throw new RuntimeException("A severe error occurred while writing the output file: "+e.getMessage());
+        } finally {
+            closeWriter();
+        }
+    }
+
+    /**
+     * stops writing and deletes the partially written output file, if it was opened
+     */
+    @Override
+    public void discardData(){
+        if(dataWriter == null){
+            return;
+        }
+        try {
+            dataWriter.discard();
+        } catch (IOException e){
+            throw new RuntimeException("A severe error occurred while deleting the output file: "+e.getMessage());
+        } finally {
+            dataWriter = null;
+        }
+    }
+
+    /**
+     * returns the header of the output file
+     * @return the names in the header
+     */
+    abstract List<String> getHeader();
+
+    /**
+     * writes the lines of the output file for a translated line
+     * @param dataWriter the writer of the output file
+     * @param line       the translated line
+     * @throws IOException when the lines cannot be written
+     */
+    abstract void writeTranslatedLine(DataWriter dataWriter, List<String> line) throws IOException;
+
+    /**
+     * creates the writer for the output file, depending on the output file type
+     * @return the data writer
+     */
+    DataWriter createDataWriter(){
+        if(runParameters.getOutputFileType() == OutputFileType.XLSX){
+            return new XlsxDataWriter(runParameters);
+        }
+        return new TextDataWriter(runParameters);
+    }
+
+    /**
+     * opens the output file and writes the header
+     * the writer is only kept once it is open; when opening fails, whatever it already created is discarded, so the
+     * error of opening the file is the one which is reported
+     * @throws IOException when the file cannot be opened or written
+     */
+    private void openWriter() throws IOException {
+        DataWriter newDataWriter = createDataWriter();
+        try {
+            newDataWriter.open(getHeader());
+        } catch (IOException | RuntimeException e) {
+            try {
+                newDataWriter.discard();
+            } catch (IOException | RuntimeException discardException) {
+                e.addSuppressed(discardException);
+            }
+            throw e;
+        }
+        dataWriter = newDataWriter;
+    }
+
+    /**
+     * closes the output file, if it was opened
+     */
+    private void closeWriter(){
+        if(dataWriter == null){
+            return;
+        }
+        try {
+            dataWriter.close();
+        } catch (IOException e){
+            throw new RuntimeException("A severe error occurred while closing the output file: "+e.getMessage());
+        } finally {
+            dataWriter = null;
+        }
+    }
 }
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2017 NKI/AvL; VUmc 2018/2019/2020
+ *
+ * This file is part of PALGA Protocol Data Translator.
+ *
+ * PALGA Protocol Data Translator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PALGA Protocol Data Translator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PALGA Protocol Data Translator. If not, see <http://www.gnu.org/licenses/>
+ */
+
+package palgadatatranslator.data.out;
+
+import palgadatatranslator.settings.RunParameters;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * class used for entity-attribute-value output data
+ * instead of a line for each data line, a line is written for each value which is not empty, with the number of the
+ * data line, the original column, the number of its repeat, the translated concept and the translated value
+ */
+public class OutputDataEntityAttributeValue extends OutputDataDefault{
+    private static final List<String> header = Arrays.asList("row", "column", "repeat", "concept", "value");
+
+    // number of the data line which is added next, starting at 1
+    private long rowNumber = 1;
+
+    /**
+     * entity-attribute-value output data
+     * @param runParameters run parameters
+     */
+    public OutputDataEntityAttributeValue(RunParameters runParameters){
+        super(runParameters);
+    }
+
+    /**
+     * returns the fixed header of the entity-attribute-value lines
+     * @return the names in the header
+     */
+    @Override
+    List<String> getHeader(){
+        return header;
+    }
+
+    /**
+     * write a line for each value in the line which is not empty
+     * @param dataWriter the writer of the output file
+     * @param line       the line to add
+     * @throws IOException when a line cannot be written
+     */
+    @Override
+    void writeTranslatedLine(DataWriter dataWriter, List<String> line) throws IOException {
+        String row = Long.toString(rowNumber++);
+        for(int i=0; i<line.size(); i++){
+            String value = line.get(i);
+            if(!value.isEmpty()){
+                OutputHeaderItem headerItem = headerList.get(i);
+                String repeat = headerItem.getRepeat() == 0 ? "" : Integer.toString(headerItem.getRepeat());
+                dataWriter.writeLine(Arrays.asList(row, headerItem.getOrigHeaderName(), repeat, headerItem.getTranslatedName(), value));
+            }
+        }
+    }
+}
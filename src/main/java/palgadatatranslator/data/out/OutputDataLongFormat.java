@@ -21,21 +21,17 @@ package palgadatatranslator.data.out;
 
 import palgadatatranslator.settings.RunParameters;
 
-import java.io.BufferedWriter;
-import java.io.FileOutputStream;
-import java.io.OutputStreamWriter;
-import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
+import java.io.IOException;
 import java.util.List;
 import java.util.stream.Collectors;
 
 /**
  * class used for long format output data
+ * each translated line is written as a line of the output file; buffered input data only creates its translated lines
+ * when the output is written, so the translated data is never kept in memory
  */
 public class OutputDataLongFormat extends OutputDataDefault{
 
-    private final List<List<String>> lines = new ArrayList<>();
-
     /**
      * Long format output data
      * @param runParameters run parameters
@@ -45,38 +41,23 @@ public class OutputDataLongFormat extends OutputDataDefault{
     }
 
     /**
-     * store the original header and the translated header
-     * @param origHeaderName original headerName
-     * @param translatedName translated headerName
+     * returns the translated header names
+     * @return the names in the header
      */
-    public void addHeaderValue(String origHeaderName, String translatedName){
-        headerList.add(new OutputHeaderItem(origHeaderName, translatedName));
+    @Override
+    List<String> getHeader(){
+        // headerlist contains OutputHeaderItems
+        return headerList.stream().map(f-> f.getTranslatedHeaderName()).collect(Collectors.toList());
     }
 
     /**
-     * add a line to our lines
-     * @param line the line to add
+     * write a line
+     * @param dataWriter the writer of the output file
+     * @param line       the line to add
+     * @throws IOException when the line cannot be written
      */
-    public void addTranslatedLine(List<String> line) {
-        lines.add(line);
-    }
-
-    /**
-     * write the data to a file
-     */
-    public void writeData(){
-        String outFileName = runParameters.getDataOutFileName();
-        try(BufferedWriter bufferedWriter = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outFileName), StandardCharsets.ISO_8859_1))){
-            // write the header; headerlist contains OutputHeaderItems
-            bufferedWriter.write(headerList.stream().map(f-> f.getTranslatedName()).collect(Collectors.joining("\t"))+System.lineSeparator());
-
-            // write the lines
-            for(List<String> line:lines){
-                bufferedWriter.write(String.join("\t", line) +System.lineSeparator());
-            }
-
-        } catch (Exception e){
-            throw new RuntimeException("A severe error occurred while writing the output file: "+e.getMessage());
-        }
+    @Override
+    void writeTranslatedLine(DataWriter dataWriter, List<String> line) throws IOException {
+        dataWriter.writeLine(line);
     }
 }
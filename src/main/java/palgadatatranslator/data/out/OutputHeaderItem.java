@@ -19,14 +19,16 @@
 
 package palgadatatranslator.data.out;
 
+import palgadatatranslator.utils.Romans;
+
 /**
  * class which stores information about an item in the original header: the original headername, its translation and a repeat number
  * the repeat number was added to support a wide-format for tranSMART. Though tranSMART support was
  * removed we decided to keep the repeat for possible future updates
- * when the data is not written in wide-format, the repeat will always be 1; otherwise it will be >=1
  *
- * as we removed transmart and it's wideformat, this class seems unnecessary. Maybe remove it in the future or add
- * "normal" support for the wide format?
+ * the repeat is now the index of the roman number of a repeated column (e.g. 2 for locatieII), or 0 if the column is
+ * not repeated. The entity-attribute-value layout writes it as a column of its own, while the wide layout appends
+ * the roman number to the translated name
  */
 public class OutputHeaderItem {
     private final String origHeaderName;
@@ -34,19 +36,19 @@ public class OutputHeaderItem {
     private final int repeat;
 
     /**
-     * constructor for header without repeats (long format)
+     * constructor for header without repeats
      * @param origHeaderName original header name
      * @param translatedName translated header name
      */
     OutputHeaderItem(String origHeaderName, String translatedName){
-        this(origHeaderName, translatedName, 1);
+        this(origHeaderName, translatedName, 0);
     }
 
     /**
-     * constructor for header with >=1 repeats (wide format)
+     * constructor for header with repeats
      * @param origHeaderName original header name
-     * @param translatedName translated header name
-     * @param repeat         repeat number of this header item
+     * @param translatedName translated header name, without the roman number
+     * @param repeat         repeat number of this header item, 0 if the column is not repeated
      */
     OutputHeaderItem(String origHeaderName, String translatedName, int repeat){
         this.origHeaderName = origHeaderName;
@@ -72,10 +74,22 @@ public class OutputHeaderItem {
 
     /**
      * returns the translated name
-     * @return the translated name
+     * @return the translated name, without the roman number of a repeated column
      */
     String getTranslatedName() {
         return translatedName;
     }
 
+    /**
+     * returns the translated name as it is used in the header of the wide layout, which includes the roman number
+     * of a repeated column
+     * @return the translated name, followed by the roman number if the column is repeated
+     */
+    String getTranslatedHeaderName() {
+        if(repeat == 0) {
+            return translatedName;
+        }
+        return translatedName + "_" + Romans.getRoman(repeat);
+    }
+
 }
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2017 NKI/AvL; VUmc 2018/2019/2020
+ *
+ * This file is part of PALGA Protocol Data Translator.
+ *
+ * PALGA Protocol Data Translator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PALGA Protocol Data Translator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PALGA Protocol Data Translator. If not, see <http://www.gnu.org/licenses/>
+ */
+
+package palgadatatranslator.data.out;
+
+import palgadatatranslator.settings.RunParameters;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * writes the translated data as a tab separated text file, or to standard output
+ *
+ * the file is ISO-8859-1 encoded, so each character is written as a single byte. Each value is copied into the array
+ * of a byte buffer in a single loop, for as much of it as fits, without joining the line into a String or using an
+ * encoder, and the buffer is written to the channel when it is full. Characters which ISO-8859-1 cannot represent are written as a question mark, as an
+ * OutputStreamWriter would; that is one question mark per code point, so a surrogate pair is a single question mark.
+ */
+class TextDataWriter implements DataWriter {
+    private static final int bufferSize = 1 << 16;
+    private static final byte[] lineSeparator = System.lineSeparator().getBytes(StandardCharsets.ISO_8859_1);
+
+    private final RunParameters runParameters;
+    private final ByteBuffer buffer = ByteBuffer.allocate(bufferSize);
+    private WritableByteChannel channel;
+
+    /**
+     * new text data writer
+     * @param runParameters run parameters
+     */
+    TextDataWriter(RunParameters runParameters){
+        this.runParameters = runParameters;
+    }
+
+    /**
+     * opens the output file and writes the header
+     * @param header the translated names in the header
+     * @throws IOException when the file cannot be opened or written
+     */
+    @Override
+    public void open(List<String> header) throws IOException {
+        channel = runParameters.isStandardOutput() ? Channels.newChannel(System.out) : FileChannel.open(Path.of(runParameters.getDataOutFileName()),
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        writeLine(header);
+    }
+
+    /**
+     * writes a single translated line
+     * @param line the line to write
+     * @throws IOException when the line cannot be written
+     */
+    @Override
+    public void writeLine(List<String> line) throws IOException {
+        for(int i=0; i<line.size(); i++){
+            if(i > 0){
+                put('\t');
+            }
+            putValue(line.get(i));
+        }
+        for(byte b : lineSeparator){
+            put((char) b);
+        }
+    }
+
+    /**
+     * closes the output file; standard output is only flushed, as it is not ours to close
+     * nothing is written if the output file could not be opened
+     * @throws IOException when the file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        if(channel == null) {
+            return;
+        }
+        flush();
+        if(runParameters.isStandardOutput()) {
+            System.out.flush();
+        }
+        else {
+            channel.close();
+        }
+    }
+
+    /**
+     * closes the output file and deletes it; what was already written to standard output cannot be taken back, so
+     * only the lines which are still buffered are dropped. If the output file could not be opened, an existing file
+     * with its name is left alone, as it was not written by this writer
+     * @throws IOException when the file cannot be closed or deleted
+     */
+    @Override
+    public void discard() throws IOException {
+        buffer.clear();
+        if(channel != null && !runParameters.isStandardOutput()) {
+            channel.close();
+            Files.deleteIfExists(Path.of(runParameters.getDataOutFileName()));
+        }
+    }
+
+    /**
+     * adds the characters of a value to the buffer, writing the buffer whenever it is full
+     * a character never takes more than one byte, so as many characters as there are bytes left in the buffer can be
+     * copied without checking the room left for each of them
+     * @param value the value
+     * @throws IOException when the buffer cannot be written
+     */
+    private void putValue(String value) throws IOException {
+        int length = value.length();
+        int offset = 0;
+        while(offset < length){
+            if(!buffer.hasRemaining()){
+                flush();
+            }
+            byte [] bytes = buffer.array();
+            int position = buffer.position();
+            int end = Math.min(length, offset + buffer.remaining());
+            for(; offset < end; offset++){
+                char c = value.charAt(offset);
+                if(c <= 0xff){
+                    bytes[position++] = (byte) c;
+                }
+                else {
+                    bytes[position++] = '?';
+                    // the low surrogate belongs to the code point the question mark was written for
+                    if(Character.isHighSurrogate(c) && offset+1 < length && Character.isLowSurrogate(value.charAt(offset+1))){
+                        offset++;
+                    }
+                }
+            }
+            buffer.position(position);
+        }
+    }
+
+    /**
+     * adds a character to the buffer, writing the buffer first if it is full
+     * @param c the character
+     * @throws IOException when the buffer cannot be written
+     */
+    private void put(char c) throws IOException {
+        if(!buffer.hasRemaining()){
+            flush();
+        }
+        buffer.put(c <= 0xff ? (byte) c : (byte) '?');
+    }
+
+    /**
+     * writes the buffer to the channel
+     * @throws IOException when the buffer cannot be written
+     */
+    private void flush() throws IOException {
+        buffer.flip();
+        while(buffer.hasRemaining()){
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
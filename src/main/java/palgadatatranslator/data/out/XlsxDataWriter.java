@@ -0,0 +1,156 @@
+/*
+ * Copyright 2017 NKI/AvL; VUmc 2018/2019/2020
+ *
+ * This file is part of PALGA Protocol Data Translator.
+ *
+ * PALGA Protocol Data Translator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PALGA Protocol Data Translator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PALGA Protocol Data Translator. If not, see <http://www.gnu.org/licenses/>
+ */
+
+package palgadatatranslator.data.out;
+
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import palgadatatranslator.settings.RunParameters;
+import palgadatatranslator.utils.LogTracker;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * writes the translated data as an Excel workbook (xlsx)
+ * the workbook is streamed: only the last rows are kept in memory, older rows are flushed to a compressed temporary
+ * file, which is copied into the workbook when it is written. A sheet holds at most the number of rows Excel
+ * supports; the lines after that continue on a new sheet, which starts with the header again
+ */
+class XlsxDataWriter implements DataWriter {
+    // number of rows kept in memory before they are flushed to the temporary file
+    private static final int rowAccessWindowSize = 100;
+    private static final int maxRows = SpreadsheetVersion.EXCEL2007.getMaxRows();
+    private static final int maxTextLength = SpreadsheetVersion.EXCEL2007.getMaxTextLength();
+    private static final String sheetName = "data";
+
+    private final RunParameters runParameters;
+    private SXSSFWorkbook workbook;
+    private List<String> header;
+    private Sheet sheet;
+    private int rowNumber;
+
+    /**
+     * new xlsx data writer
+     * @param runParameters run parameters
+     */
+    XlsxDataWriter(RunParameters runParameters){
+        this.runParameters = runParameters;
+    }
+
+    /**
+     * creates the workbook and writes the header to its first sheet
+     * @param header the translated names in the header
+     */
+    @Override
+    public void open(List<String> header) {
+        this.header = header;
+        workbook = new SXSSFWorkbook(null, rowAccessWindowSize, true);
+        createSheet();
+    }
+
+    /**
+     * writes a single translated line, continuing on a new sheet when the current one is full
+     * @param line the line to write
+     */
+    @Override
+    public void writeLine(List<String> line) {
+        if(rowNumber == maxRows){
+            createSheet();
+        }
+        addRow(line);
+    }
+
+    /**
+     * writes the workbook to the output file and removes the temporary files
+     * @throws IOException when the workbook cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if(runParameters.isStandardOutput()) {
+                workbook.write(System.out);
+                System.out.flush();
+            }
+            else {
+                try (OutputStream outputStream = new FileOutputStream(runParameters.getDataOutFileName())) {
+                    workbook.write(outputStream);
+                }
+            }
+        } finally {
+            workbook.dispose();
+            workbook.close();
+        }
+    }
+
+    /**
+     * removes the temporary files without writing the workbook; the output file is only created when the workbook is
+     * written, so there is no file to delete
+     * @throws IOException when the workbook cannot be closed
+     */
+    @Override
+    public void discard() throws IOException {
+        if(workbook == null) {
+            return;
+        }
+        workbook.dispose();
+        workbook.close();
+    }
+
+    /**
+     * adds a new sheet and writes the header to it
+     */
+    private void createSheet(){
+        int sheetNumber = workbook.getNumberOfSheets() + 1;
+        sheet = workbook.createSheet(sheetNumber == 1 ? sheetName : sheetName + " (" + sheetNumber + ")");
+        rowNumber = 0;
+        addRow(header);
+    }
+
+    /**
+     * adds a row with the values of a line to the current sheet; empty values are left out
+     * @param line the values to add
+     */
+    private void addRow(List<String> line){
+        Row row = sheet.createRow(rowNumber++);
+        for(int i=0; i<line.size(); i++){
+            String value = line.get(i);
+            if(!value.isEmpty()) {
+                row.createCell(i).setCellValue(truncate(value));
+            }
+        }
+    }
+
+    /**
+     * truncates a value which is longer than a cell may contain
+     * @param value the value
+     * @return the value, truncated if necessary
+     */
+    private String truncate(String value){
+        if(value.length() <= maxTextLength){
+            return value;
+        }
+        LogTracker.logMessage(this.getClass(), "Some values are longer than the "+maxTextLength+" characters an Excel cell may contain. These values are truncated.");
+        return value.substring(0, maxTextLength);
+    }
+}
@@ -39,8 +39,11 @@ import org.controlsfx.validation.ValidationSupport;
 import org.controlsfx.validation.Validator;
 import palgadatatranslator.utils.enumerate.OutputFileType;
 import palgadatatranslator.utils.enumerate.OutputFormatType;
+import palgadatatranslator.utils.enumerate.OutputLayout;
+import palgadatatranslator.utils.enumerate.ProcessingMode;
 import palgadatatranslator.codebook.ProtocolCodebookManager;
 import palgadatatranslator.settings.GlobalSettings;
+import palgadatatranslator.settings.OutputTarget;
 import palgadatatranslator.settings.RunParameters;
 
 
@@ -56,6 +59,9 @@ class GUIWizard {
     // create file extension filters
     private static final FileChooser.ExtensionFilter allFilesExtensionFilter = new FileChooser.ExtensionFilter("all files", "*.*");
     private static final FileChooser.ExtensionFilter txtFilesExtensionFilter = new FileChooser.ExtensionFilter("txt files", "*.txt");
+    private static final FileChooser.ExtensionFilter xlsxFilesExtensionFilter = new FileChooser.ExtensionFilter("xlsx files", "*.xlsx");
+
+    private static final String noAdditionalFormat = "None";
 
     private static final int wizardWidth = 600;
     private static final int wizardHeight = 300;
@@ -234,6 +240,9 @@ class GUIWizard {
             private ComboBox <String> protocolComboBox;
             private ComboBox <String> outputFileTypesComboBox;
             private ComboBox <String> translateFormatComboBox;
+            private ComboBox <String> additionalFormatComboBox;
+            private ComboBox <String> outputLayoutComboBox;
+            private ComboBox <String> processingModeComboBox;
             private ValidationSupport validationSupport = new ValidationSupport();
 
             {
@@ -252,7 +261,7 @@ class GUIWizard {
                 // create the gridpane and add the textfields, buttons and labels
                 int rowNum = 0;
                 GridPane gridPane = createGridPane();
-                dataFile  = createBrowseFileRow(gridPane, "protocolFile", "Protocol data file:", oldParameters.getInputFileName(), rowNum, txtFilesExtensionFilter, allFilesExtensionFilter);
+                dataFile  = createBrowseFileRow(gridPane, "protocolFile", "Protocol data file:", oldParameters.getInputFileName(), rowNum, txtFilesExtensionFilter, xlsxFilesExtensionFilter, allFilesExtensionFilter);
 
                 protocolComboBox = createComboBox("protocol", FXCollections.observableArrayList(GlobalSettings.getProtocols()));
                 gridPane.add(new Label("Protocol:"),0,++rowNum);
@@ -269,6 +278,27 @@ class GUIWizard {
                 gridPane.add(translateFormatComboBox,1,rowNum);
                 translateFormatComboBox.setValue(oldParameters.getOutputFormatType().getPrettyString());
 
+                List<String> additionalFormats = new ArrayList<>();
+                additionalFormats.add(noAdditionalFormat);
+                additionalFormats.addAll(getOutputFormatTypeList());
+                additionalFormatComboBox = createComboBox("additionalOutputFormat", FXCollections.observableArrayList(additionalFormats));
+                gridPane.add(new Label("Additional output format:"),0,++rowNum);
+                gridPane.add(additionalFormatComboBox,1,rowNum);
+                additionalFormatComboBox.setValue(getAdditionalFormat(oldParameters));
+                addTooltip(additionalFormatComboBox, "Writes a second output file in this format, while the data is translated only once");
+
+                outputLayoutComboBox = createComboBox("outputLayout", FXCollections.observableArrayList(getOutputLayoutList()));
+                gridPane.add(new Label("Layout:"),0,++rowNum);
+                gridPane.add(outputLayoutComboBox,1,rowNum);
+                outputLayoutComboBox.setValue(oldParameters.getOutputLayout().getPrettyString());
+                addTooltip(outputLayoutComboBox, "One line per value writes only the values which are not empty, which is much smaller for sparse data");
+
+                processingModeComboBox = createComboBox("processingMode", FXCollections.observableArrayList(getProcessingModeList()));
+                gridPane.add(new Label("Processing:"),0,++rowNum);
+                gridPane.add(processingModeComboBox,1,rowNum);
+                processingModeComboBox.setValue(oldParameters.getProcessingMode().getPrettyString());
+                addTooltip(processingModeComboBox, "Streaming reads the data file twice but keeps memory use constant, which is useful for very large files");
+
                 // create and add the clearbutton
                 gridPane.add(createClearButton(), 1, ++rowNum);
 
@@ -278,6 +308,16 @@ class GUIWizard {
                 addValidation();
             }
 
+            /**
+             * returns the output format of the second output of the previous run, if there was one
+             * @param oldParameters previous run parameters
+             * @return the pretty string of the output format, or the string for no additional format
+             */
+            private String getAdditionalFormat(RunParameters oldParameters){
+                List<OutputTarget> outputTargets = oldParameters.getOutputTargets();
+                return outputTargets.size() > 1 ? outputTargets.get(1).getOutputFormatType().getPrettyString() : noAdditionalFormat;
+            }
+
             /**
              * add the options to the outputFormatTypes dropdown
              */
@@ -303,6 +343,30 @@ class GUIWizard {
                 return settings;
             }
 
+            /**
+             * add the output layouts to the dropdown
+             */
+            private List<String> getOutputLayoutList() {
+                List<String> settings = new ArrayList<>();
+                // fetch the pretty string for the user interface
+                for(OutputLayout outputLayout: OutputLayout.values()){
+                    settings.add(outputLayout.getPrettyString());
+                }
+                return settings;
+            }
+
+            /**
+             * add the processing modes to the dropdown
+             */
+            private List<String> getProcessingModeList() {
+                List<String> settings = new ArrayList<>();
+                // fetch the pretty string for the user interface
+                for(ProcessingMode processingMode: ProcessingMode.values()){
+                    settings.add(processingMode.getPrettyString());
+                }
+                return settings;
+            }
+
             /**
              * adds validations to fields
              */
@@ -437,8 +501,17 @@ class GUIWizard {
                 OutputFileType outputFileType = OutputFileType.getEnum(getStringSetting(wizard.getSettings(), "translateTo"));
                 OutputFormatType outputFormat = OutputFormatType.getEnum(getStringSetting(wizard.getSettings(), "outputFormat"));
                 String fromLanguage = getStringSetting(wizard.getSettings(), "languages");
-
-                runParameters = new RunParameters(dataFile, protocol, outputFormat, outputFileType, fromLanguage);
+                ProcessingMode processingMode = ProcessingMode.getEnum(getStringSetting(wizard.getSettings(), "processingMode"));
+                OutputLayout outputLayout = OutputLayout.getEnum(getStringSetting(wizard.getSettings(), "outputLayout"));
+                String additionalFormat = getStringSetting(wizard.getSettings(), "additionalOutputFormat");
+
+                // the data is translated once for the output format and, if selected, the additional output format
+                List<OutputTarget> outputTargets = new ArrayList<>();
+                outputTargets.add(new OutputTarget(outputFormat, outputFileType));
+                if(!additionalFormat.isEmpty() && !additionalFormat.equals(noAdditionalFormat)){
+                    outputTargets.add(new OutputTarget(OutputFormatType.getEnum(additionalFormat), outputFileType));
+                }
+                runParameters = new RunParameters(dataFile, protocol, outputTargets, fromLanguage, processingMode, null, outputLayout);
             }
 
             /**
@@ -37,10 +37,13 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import palgadatatranslator.data.in.InputDataFactory;
 import palgadatatranslator.data.in.InputData;
+import palgadatatranslator.data.in.TranslationProgress;
 import palgadatatranslator.gui.resourcemanagement.ResourceManager;
 import palgadatatranslator.settings.RunParameters;
+import palgadatatranslator.utils.CancellationToken;
 import palgadatatranslator.utils.LogTracker;
 import palgadatatranslator.utils.TextAreaAppender;
+import palgadatatranslator.utils.TranslationCancelledException;
 
 /**
  * Main of the program
@@ -53,6 +56,11 @@ public class MainWindow{
     private static final int sceneHeight = 500;
 
     private TextArea logArea;
+    private ProgressBar progressBar;
+    private Label progressLabel;
+    private Button buttonRun;
+    private Button buttonCancel;
+    private WorkTask workTask;
 
     private RunParameters runParameters=getDefaultParameters();
 
@@ -138,16 +146,33 @@ public class MainWindow{
     }
 
     /**
-     * Create center pane which contains the log area
+     * Create center pane which contains the log area and the progress of the run
      * @return the Node which will be added to the borderpane
      */
     private Node setupCenterPane(){
-        // center pane currently contains only logarea, which we add to an hbox an return
-        HBox hBox = new HBox();
-        hBox.getStyleClass().add("fillBackground");
+        // the logarea with the progress of the run below it
+        VBox vBox = new VBox();
+        vBox.getStyleClass().add("fillBackground");
         createLogArea();
-        hBox.getChildren().addAll(logArea);
-        hBox.setAlignment(Pos.CENTER);
+        vBox.getChildren().addAll(logArea, createProgressBox());
+        vBox.setAlignment(Pos.CENTER);
+        return vBox;
+    }
+
+    /**
+     * create the box with the progress bar and the progress message of the run
+     * @return the box
+     */
+    private Node createProgressBox(){
+        progressBar = new ProgressBar(0);
+        progressBar.setPrefWidth(200);
+        progressLabel = new Label();
+
+        HBox hBox = new HBox();
+        hBox.setPadding(new Insets(5, 12, 0, 12));
+        hBox.setSpacing(10);
+        hBox.setAlignment(Pos.CENTER_LEFT);
+        hBox.getChildren().addAll(progressBar, progressLabel);
         return hBox;
     }
 
@@ -182,10 +207,16 @@ public class MainWindow{
         buttonClear.setOnAction(event -> logArea.setText(StaticTexts.getWelcomeText()));
 
         // add some buttons and tell what to do when the button is clicked
-        Button buttonRun = new Button("Run");
+        buttonRun = new Button("Run");
         buttonRun.setPrefSize(100, 20);
         buttonRun.setOnAction(event -> startTask());
 
+        // only enabled while a run is busy
+        buttonCancel = new Button("Cancel");
+        buttonCancel.setPrefSize(100, 20);
+        buttonCancel.setDisable(true);
+        buttonCancel.setOnAction(event -> cancelTask());
+
         Button buttonExit = new Button("Exit");
         buttonExit.setPrefSize(100, 20);
         buttonExit.setOnAction(event -> System.exit(0));
@@ -202,9 +233,14 @@ public class MainWindow{
         helpHyperlink.getStyleClass().add("hyperlink");
         aboutHyperlink.setOnAction(event -> AboutWindow.showAbout());
 
+        // shows how many log lines were dropped, once there are any
+        Label droppedLinesLabel = new Label();
+        droppedLinesLabel.textProperty().bind(TextAreaAppender.droppedLinesProperty().asString("%d log lines dropped"));
+        droppedLinesLabel.visibleProperty().bind(TextAreaAppender.droppedLinesProperty().greaterThan(0));
+
         // add to boxes
-        rightBox.getChildren().addAll(helpHyperlink, aboutHyperlink);
-        hBox.getChildren().addAll(buttonClear, buttonRun, buttonExit, rightBox);
+        rightBox.getChildren().addAll(droppedLinesLabel, helpHyperlink, aboutHyperlink);
+        hBox.getChildren().addAll(buttonClear, buttonRun, buttonCancel, buttonExit, rightBox);
 
         // give the right button a margin to push it to the center of the page
         HBox.setMargin(buttonExit, new Insets(0,150,0,0));
@@ -230,7 +266,13 @@ public class MainWindow{
         try {
             if(GUIWizard.startWizard(runParameters)) {
                 runParameters = GUIWizard.getRunParameters();
-                new Thread(new WorkTask()).start();
+                workTask = new WorkTask();
+                progressBar.progressProperty().bind(workTask.progressProperty());
+                progressLabel.textProperty().bind(workTask.messageProperty());
+                // a single run at a time, which can be cancelled while it is busy
+                buttonRun.disableProperty().bind(workTask.runningProperty());
+                buttonCancel.disableProperty().bind(workTask.runningProperty().not());
+                new Thread(workTask).start();
             }
         } catch (Exception e) {
             e.printStackTrace();
@@ -238,14 +280,46 @@ public class MainWindow{
         logArea.appendText("");
     }
 
+    /**
+     * Called after the cancel button is clicked.
+     * Asks the running task to stop; it stops at the next batch of rows and deletes its partial output files
+     */
+    private void cancelTask(){
+        if(workTask != null) {
+            workTask.cancelRun();
+        }
+    }
+
     /**
      * does the work
      */
-    private class WorkTask extends Task {
+    private class WorkTask extends Task<Void> {
+        // the task coalesces its updates, but there is no need to report more often than a few times per second
+        private static final long reportIntervalMillis = 200;
+        private final CancellationToken cancellationToken = new CancellationToken();
+
         WorkTask(){
 
         }
 
+        /**
+         * asks the run to stop; the run is not interrupted, but stops itself once it sees the request
+         */
+        void cancelRun(){
+            cancellationToken.cancel();
+            logger.log(Level.INFO, "Cancelling the translation...");
+        }
+
+        /**
+         * shows the progress of the run in the progress bar and its message
+         * @param progress the progress
+         */
+        private void showProgress(TranslationProgress progress){
+            double fraction = progress.getFraction();
+            updateProgress(fraction < 0 ? -1 : fraction, 1);
+            updateMessage(progress.toString());
+        }
+
         /**
          * creates the captionoverwriter, generates the codebook items, creates the codebook,
          * saves the codebook and write the conflicting captions to a file
@@ -257,7 +331,7 @@ public class MainWindow{
 
                 // clear the logtracker, as the messages stored there are run specific and should therefore be cleared
                 LogTracker.clearLog();
-                InputData inputData = InputDataFactory.getInputData(runParameters);
+                InputData inputData = InputDataFactory.getInputData(runParameters, this::showProgress, reportIntervalMillis, cancellationToken);
                 if(inputData!=null) {
                     inputData.translate();
                     inputData.writeOutput();
@@ -265,9 +339,15 @@ public class MainWindow{
                     Platform.runLater(() -> logger.log(Level.INFO, "Done."));
                 }
                 logger.log(Level.INFO, "Finished!");
+            } catch (TranslationCancelledException e) {
+                updateMessage(e.getMessage());
+                logger.log(Level.INFO, "The translation was cancelled.");
             } catch (Exception e) {
                 logger.error("A severe error occurred:\n" + e.getMessage() + "\n");
                 e.printStackTrace();
+            } finally {
+                // the issues of the run are logged once, as a summary
+                LogTracker.logSummary();
             }
             return null;
         }
@@ -19,6 +19,8 @@
 
 package palgadatatranslator.settings;
 
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.*;
 
 /**
@@ -27,6 +29,16 @@ import java.util.*;
 public class GlobalSettings {
     public static String server = "https://decor.nictiz.nl/services/";
     private static final Map<String, String> protocolNameToPrefixMap = new TreeMap<>();
+    // number of threads used to translate the data lines
+    private static int translationThreads = Runtime.getRuntime().availableProcessors();
+    // maximum number of codebook versions which are retrieved from art-decor at the same time
+    private static int codebookFetchThreads = 4;
+    // directory in which the responses of art-decor are cached; null disables the cache
+    private static Path cacheDirectory = Path.of(System.getProperty("user.home"), ".palgadatatranslator", "cache");
+    // how long a cached response is used before it is revalidated with the server
+    private static Duration cacheTimeToLive = Duration.ofDays(1);
+    // how long a request to art-decor may take, including receiving the response
+    private static Duration requestTimeout = Duration.ofMinutes(5);
 
     // in the future this will be read from some file
     static{
@@ -43,6 +55,86 @@ public class GlobalSettings {
         return "Colonbiopt";
     }
 
+    /**
+     * returns the number of threads used to translate the data lines
+     * @return the number of threads
+     */
+    public static int getTranslationThreads(){
+        return translationThreads;
+    }
+
+    /**
+     * sets the number of threads used to translate the data lines; 1 translates on the calling thread
+     * @param translationThreads the number of threads
+     */
+    public static void setTranslationThreads(int translationThreads){
+        GlobalSettings.translationThreads = Math.max(1, translationThreads);
+    }
+
+    /**
+     * returns the maximum number of codebook versions which are retrieved from art-decor at the same time
+     * @return the number of threads
+     */
+    public static int getCodebookFetchThreads(){
+        return codebookFetchThreads;
+    }
+
+    /**
+     * sets the maximum number of codebook versions which are retrieved from art-decor at the same time
+     * @param codebookFetchThreads the number of threads
+     */
+    public static void setCodebookFetchThreads(int codebookFetchThreads){
+        GlobalSettings.codebookFetchThreads = Math.max(1, codebookFetchThreads);
+    }
+
+    /**
+     * returns the directory in which the responses of art-decor are cached
+     * @return the cache directory, or null if the cache is disabled
+     */
+    public static Path getCacheDirectory(){
+        return cacheDirectory;
+    }
+
+    /**
+     * sets the directory in which the responses of art-decor are cached
+     * @param cacheDirectory the cache directory, or null to disable the cache
+     */
+    public static void setCacheDirectory(Path cacheDirectory){
+        GlobalSettings.cacheDirectory = cacheDirectory;
+    }
+
+    /**
+     * returns how long a cached response is used before it is revalidated with the server
+     * @return the time to live of cached responses
+     */
+    public static Duration getCacheTimeToLive(){
+        return cacheTimeToLive;
+    }
+
+    /**
+     * sets how long a cached response is used before it is revalidated with the server
+     * @param cacheTimeToLive the time to live of cached responses
+     */
+    public static void setCacheTimeToLive(Duration cacheTimeToLive){
+        GlobalSettings.cacheTimeToLive = cacheTimeToLive;
+    }
+
+    /**
+     * returns how long a request to art-decor may take, including receiving the response
+     * @return the request timeout
+     */
+    public static Duration getRequestTimeout(){
+        return requestTimeout;
+    }
+
+    /**
+     * sets how long a request to art-decor may take, including receiving the response
+     * @param requestTimeout the request timeout
+     */
+    public static void setRequestTimeout(Duration requestTimeout){
+        GlobalSettings.requestTimeout = requestTimeout;
+    }
+
     /**
      * get all the protocol available
      * @return a set with all the protocols
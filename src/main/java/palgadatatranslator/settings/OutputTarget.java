@@ -0,0 +1,73 @@
+/*
+ * Copyright 2017 NKI/AvL; VUmc 2018/2019/2020
+ *
+ * This file is part of PALGA Protocol Data Translator.
+ *
+ * PALGA Protocol Data Translator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PALGA Protocol Data Translator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PALGA Protocol Data Translator. If not, see <http://www.gnu.org/licenses/>
+ */
+
+package palgadatatranslator.settings;
+
+import palgadatatranslator.utils.enumerate.OutputFileType;
+import palgadatatranslator.utils.enumerate.OutputFormatType;
+
+import java.util.Objects;
+
+/**
+ * an output of a run: the format in which the values are written and the type of file they are written to
+ * a run can have several outputs, which are all written while the data is translated once
+ */
+public class OutputTarget {
+    private final OutputFormatType outputFormatType;
+    private final OutputFileType outputFileType;
+
+    /**
+     * new output target
+     * @param outputFormatType type of output (e.g. CODES)
+     * @param outputFileType   type of output file (text or xlsx)
+     */
+    public OutputTarget(OutputFormatType outputFormatType, OutputFileType outputFileType){
+        this.outputFormatType = outputFormatType;
+        this.outputFileType = outputFileType;
+    }
+
+    /**
+     * returns the output format type
+     * @return the output format type
+     */
+    public OutputFormatType getOutputFormatType() {
+        return outputFormatType;
+    }
+
+    /**
+     * returns the output file type
+     * @return the output file type
+     */
+    public OutputFileType getOutputFileType() {
+        return outputFileType;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof OutputTarget)) return false;
+        OutputTarget that = (OutputTarget) o;
+        return outputFormatType == that.outputFormatType && outputFileType == that.outputFileType;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(outputFormatType, outputFileType);
+    }
+}
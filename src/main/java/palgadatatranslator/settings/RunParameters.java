@@ -21,10 +21,15 @@ package palgadatatranslator.settings;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import palgadatatranslator.utils.enumerate.InputFileType;
 import palgadatatranslator.utils.enumerate.OutputFileType;
 import palgadatatranslator.utils.enumerate.OutputFormatType;
+import palgadatatranslator.utils.enumerate.OutputLayout;
+import palgadatatranslator.utils.enumerate.ProcessingMode;
 
 import java.io.File;
+import java.util.LinkedHashSet;
+import java.util.List;
 
 /**
  * contains all the user parameters the ui generates
@@ -32,12 +37,16 @@ import java.io.File;
  */
 public class RunParameters {
     private static final Logger logger = LogManager.getLogger(RunParameters.class.getName());
+    // file name which stands for standard input (as input file) or standard output (as output file)
+    public static final String STANDARD_STREAM = "-";
     private final String fromLanguage;
 
-    private final OutputFormatType outputFormatType;
-    private final OutputFileType outputFileType;
+    private final List<OutputTarget> outputTargets;
+    private final ProcessingMode processingMode;
+    private final OutputLayout outputLayout;
     private final String protocolPrefix;
     private final String inputFileName;
+    private final String dataOutFileName;
     private final String protocolName;
 
     /**
@@ -52,16 +61,77 @@ public class RunParameters {
      * @param inputFileName    name of the input file
      * @param protocolName     name of the protocol
      * @param outputFormatType type of output (e.g. CODES)
-     * @param outputFileType   type of output file (currently always text)
+     * @param outputFileType   type of output file (text or xlsx)
      * @param fromLanguage     language of the source file
      */
     public RunParameters(String inputFileName, String protocolName, OutputFormatType outputFormatType, OutputFileType outputFileType, String fromLanguage){
+        this(inputFileName, protocolName, outputFormatType, outputFileType, fromLanguage, ProcessingMode.BUFFERED);
+    }
+
+    /**
+     * constructor for run parameters
+     * @param inputFileName    name of the input file
+     * @param protocolName     name of the protocol
+     * @param outputFormatType type of output (e.g. CODES)
+     * @param outputFileType   type of output file (text or xlsx)
+     * @param fromLanguage     language of the source file
+     * @param processingMode   whether the data is kept in memory or streamed from disk
+     */
+    public RunParameters(String inputFileName, String protocolName, OutputFormatType outputFormatType, OutputFileType outputFileType, String fromLanguage, ProcessingMode processingMode){
+        this(inputFileName, protocolName, outputFormatType, outputFileType, fromLanguage, processingMode, null);
+    }
+
+    /**
+     * constructor for run parameters
+     * standard input can only be read once, so data from standard input is always kept in memory
+     * @param inputFileName    name of the input file, or STANDARD_STREAM for standard input
+     * @param protocolName     name of the protocol
+     * @param outputFormatType type of output (e.g. CODES)
+     * @param outputFileType   type of output file (text or xlsx)
+     * @param fromLanguage     language of the source file
+     * @param processingMode   whether the data is kept in memory or streamed from disk
+     * @param dataOutFileName  name of the output file, STANDARD_STREAM for standard output or null to derive it from the input file
+     */
+    public RunParameters(String inputFileName, String protocolName, OutputFormatType outputFormatType, OutputFileType outputFileType, String fromLanguage, ProcessingMode processingMode, String dataOutFileName){
+        this(inputFileName, protocolName, outputFormatType, outputFileType, fromLanguage, processingMode, dataOutFileName, OutputLayout.WIDE);
+    }
+
+    /**
+     * constructor for run parameters
+     * standard input can only be read once, so data from standard input is always kept in memory
+     * @param inputFileName    name of the input file, or STANDARD_STREAM for standard input
+     * @param protocolName     name of the protocol
+     * @param outputFormatType type of output (e.g. CODES)
+     * @param outputFileType   type of output file (text or xlsx)
+     * @param fromLanguage     language of the source file
+     * @param processingMode   whether the data is kept in memory or streamed from disk
+     * @param dataOutFileName  name of the output file, STANDARD_STREAM for standard output or null to derive it from the input file
+     * @param outputLayout     whether a line is written for each data line or for each value
+     */
+    public RunParameters(String inputFileName, String protocolName, OutputFormatType outputFormatType, OutputFileType outputFileType, String fromLanguage, ProcessingMode processingMode, String dataOutFileName, OutputLayout outputLayout){
+        this(inputFileName, protocolName, List.of(new OutputTarget(outputFormatType, outputFileType)), fromLanguage, processingMode, dataOutFileName, outputLayout);
+    }
+
+    /**
+     * constructor for run parameters with one or more outputs, which are all written while the data is translated once
+     * standard input can only be read once, so data from standard input is always kept in memory
+     * @param inputFileName    name of the input file, or STANDARD_STREAM for standard input
+     * @param protocolName     name of the protocol
+     * @param outputTargets    the outputs, each with its type of output and type of output file; duplicates are ignored
+     * @param fromLanguage     language of the source file
+     * @param processingMode   whether the data is kept in memory or streamed from disk
+     * @param dataOutFileName  name of the output file, STANDARD_STREAM for standard output or null to derive it from the input file
+     * @param outputLayout     whether a line is written for each data line or for each value
+     */
+    public RunParameters(String inputFileName, String protocolName, List<OutputTarget> outputTargets, String fromLanguage, ProcessingMode processingMode, String dataOutFileName, OutputLayout outputLayout){
         this.inputFileName =  inputFileName;
         this.protocolName = protocolName;
         this.protocolPrefix = GlobalSettings.getProtocolPrefix(protocolName);
-        this.outputFormatType = outputFormatType;
-        this.outputFileType = outputFileType;
+        this.outputTargets = List.copyOf(new LinkedHashSet<>(outputTargets));
         this.fromLanguage = fromLanguage;
+        this.processingMode = inputFileName.equals(STANDARD_STREAM) ? ProcessingMode.BUFFERED : processingMode;
+        this.dataOutFileName = dataOutFileName;
+        this.outputLayout = outputLayout;
     }
 
     /**
@@ -72,26 +142,73 @@ public class RunParameters {
         String summaryText=
                 "data file: "+inputFileName+"\n" +
                 "protocol: "+protocolName+"\n" +
-                "filetype: "+outputFileType.getPrettyString()+"\n" +
-                "containing: "+outputFormatType.getPrettyString()+"\n" +
-                "source language: "+fromLanguage;
+                getOutputTargetsSummary() +
+                "source language: "+fromLanguage+"\n" +
+                "layout: "+outputLayout.getPrettyString()+"\n" +
+                "processing: "+processingMode.getPrettyString();
         return summaryText;
     }
 
     /**
-     * returns the output format type
+     * returns the file type and format of each output
+     * @return the summary of the outputs, one per line
+     */
+    private String getOutputTargetsSummary(){
+        StringBuilder summary = new StringBuilder();
+        for(OutputTarget outputTarget : outputTargets){
+            summary.append("filetype: ").append(outputTarget.getOutputFileType().getPrettyString()).append("\n")
+                    .append("containing: ").append(outputTarget.getOutputFormatType().getPrettyString()).append("\n");
+        }
+        return summary.toString();
+    }
+
+    /**
+     * returns the output format type of the first output
      * @return the output format type
      */
     public OutputFormatType getOutputFormatType() {
-        return outputFormatType;
+        return outputTargets.get(0).getOutputFormatType();
     }
 
     /**
-     * returns the output file type
+     * returns the output file type of the first output
      * @return the output file type
      */
     public OutputFileType getOutputFileType() {
-        return outputFileType;
+        return outputTargets.get(0).getOutputFileType();
+    }
+
+    /**
+     * returns the outputs of the run
+     * @return the outputs
+     */
+    public List<OutputTarget> getOutputTargets() {
+        return outputTargets;
+    }
+
+    /**
+     * returns the run parameters for writing a single output of this run
+     * @param outputTarget one of the outputs of this run
+     * @return run parameters with only this output, which is written to its own file
+     */
+    public RunParameters forOutputTarget(OutputTarget outputTarget) {
+        return new RunParameters(inputFileName, protocolName, List.of(outputTarget), fromLanguage, processingMode, getDataOutFileName(outputTarget), outputLayout);
+    }
+
+    /**
+     * returns the output layout
+     * @return the output layout
+     */
+    public OutputLayout getOutputLayout() {
+        return outputLayout;
+    }
+
+    /**
+     * returns the processing mode
+     * @return the processing mode
+     */
+    public ProcessingMode getProcessingMode() {
+        return processingMode;
     }
 
     /**
@@ -118,6 +235,30 @@ public class RunParameters {
         return inputFileName;
     }
 
+    /**
+     * returns the type of the input file, which is derived from its extension; standard input is read as text
+     * @return the type of the input file
+     */
+    public InputFileType getInputFileType(){
+        return isStandardInput() ? InputFileType.TEXT : InputFileType.getFileType(inputFileName);
+    }
+
+    /**
+     * returns whether the data is read from standard input
+     * @return true/false
+     */
+    public boolean isStandardInput(){
+        return inputFileName.equals(STANDARD_STREAM);
+    }
+
+    /**
+     * returns whether the output is written to standard output
+     * @return true/false
+     */
+    public boolean isStandardOutput(){
+        return getDataOutFileName().equals(STANDARD_STREAM);
+    }
+
     /**
      * returns the protocol name
      * @return the protocol name
@@ -140,21 +281,59 @@ public class RunParameters {
      * @return the name of the data output file
      */
     public String getDataOutFileName(){
+        if(dataOutFileName != null){
+            return dataOutFileName;
+        }
+        if(isStandardInput()){
+            return STANDARD_STREAM;
+        }
         String outFileName = inputFileName.substring(0, inputFileName.lastIndexOf("."));
-        outFileName += "_out.txt";
+        outFileName += "_out" + getOutputFileType().getExtension();
         return outFileName;
     }
 
+    /**
+     * returns the name of the data output file of one of the outputs
+     * with a single output this is the name of the data output file; with several outputs the name of the output
+     * format is added, e.g. data_out_CODES.txt, and the extension follows from the output file type
+     * @param outputTarget one of the outputs of this run
+     * @return the name of the data output file
+     */
+    public String getDataOutFileName(OutputTarget outputTarget){
+        if(outputTargets.size() == 1){
+            return getDataOutFileName();
+        }
+        String baseName = dataOutFileName != null ? removeExtension(dataOutFileName) : removeExtension(inputFileName) + "_out";
+        return baseName + "_" + outputTarget.getOutputFormatType().name() + outputTarget.getOutputFileType().getExtension();
+    }
+
+    /**
+     * removes the extension from a file name, if it has one
+     * @param fileName the file name
+     * @return the file name without extension
+     */
+    private static String removeExtension(String fileName){
+        int extensionIndex = fileName.lastIndexOf(".");
+        if(extensionIndex <= fileName.lastIndexOf(File.separator)){
+            return fileName;
+        }
+        return fileName.substring(0, extensionIndex);
+    }
+
     /**
      * returns whether the settings are valid
      * @return true/false
      */
     public boolean validSettings(){
         boolean valid = true;
-        if (!isValidInputFile(inputFileName)) {
+        if (!isStandardInput() && !isValidInputFile(inputFileName)) {
             logger.error("Please select a valid datafile before running");
             valid = false;
         }
+        if (outputTargets.size() > 1 && isStandardOutput()) {
+            logger.error("Several outputs cannot be written to standard output; please select an output file");
+            valid = false;
+        }
         return valid;
     }
 
@@ -0,0 +1,296 @@
+/*
+ * Copyright 2017 NKI/AvL; VUmc 2018/2019/2020
+ *
+ * This file is part of PALGA Protocol Data Translator.
+ *
+ * PALGA Protocol Data Translator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PALGA Protocol Data Translator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PALGA Protocol Data Translator. If not, see <http://www.gnu.org/licenses/>
+ */
+
+package palgadatatranslator.utils;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import palgadatatranslator.settings.GlobalSettings;
+
+import java.io.*;
+import java.net.URI;
+import java.net.URLConnection;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * local cache for the responses of art-decor, so the codebooks don't have to be downloaded on every run
+ *
+ * each response is stored in the cache directory, together with a properties file containing the ETag and
+ * Last-Modified headers and the time it was fetched. Within the time to live the cached response is used as is;
+ * after that it is revalidated with a conditional request, which the server answers with 304 if it didn't change.
+ * If the server cannot be reached or fails, a cached response is used regardless of its age.
+ * The responses of each server are cached in a directory of their own, as the same dataset id may have a different
+ * response on another server. A request may take at most GlobalSettings.getRequestTimeout(), including receiving the
+ * response, so a server which stops responding halfway doesn't block the run.
+ */
+public class ArtDecorCache {
+    private static final Logger logger = LogManager.getLogger(ArtDecorCache.class.getName());
+    private static final HttpClient httpClient = HttpClient.newBuilder()
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .connectTimeout(Duration.ofSeconds(30))
+            .build();
+    // one lock per cached file, so the same response isn't downloaded by multiple threads at the same time
+    private static final Map<Path, Object> fileLocks = new ConcurrentHashMap<>();
+
+    /**
+     * opens the dataset (codebook) for a specific version and language
+     * @param datasetId identifier of the dataset to retrieve
+     * @param version   version of the dataset
+     * @param langFrom  language of the source data
+     * @return stream with the dataset
+     * @throws IOException when the dataset is neither cached nor available online
+     */
+    public static InputStream openRetrieveDataset(String datasetId, String version, String langFrom) throws IOException {
+        return open(ArtDecorCalls.getRetrieveDatasetURI(datasetId, langFrom), "dataset_" + datasetId + "_" + version + "_" + langFrom);
+    }
+
+    /**
+     * returns the cached file with the dataset (codebook) for a specific version and language
+     * @param datasetId identifier of the dataset to retrieve
+     * @param version   version of the dataset
+     * @param langFrom  language of the source data
+     * @return the cached file, or null if the cache is disabled
+     * @throws IOException when the dataset is neither cached nor available online
+     */
+    public static Path getRetrieveDatasetFile(String datasetId, String version, String langFrom) throws IOException {
+        Path cacheDirectory = GlobalSettings.getCacheDirectory();
+        if(cacheDirectory == null) {
+            return null;
+        }
+        return getCachedFile(getServerDirectory(cacheDirectory), ArtDecorCalls.getRetrieveDatasetURI(datasetId, langFrom), "dataset_" + datasetId + "_" + version + "_" + langFrom);
+    }
+
+    /**
+     * opens the project index, which contains the versions that are available for a protocol
+     * @param prefix prefix of the protocol
+     * @return stream with the project index
+     * @throws IOException when the project index is neither cached nor available online
+     */
+    public static InputStream openProjectIndex(String prefix) throws IOException {
+        return open(ArtDecorCalls.getProjectIndexURI(prefix), "projectindex_" + prefix);
+    }
+
+    /**
+     * opens the response of a uri, using the cache if it is enabled
+     * @param uri      the uri to retrieve
+     * @param cacheKey key of the response in the cache
+     * @return stream with the response
+     * @throws IOException when the response is neither cached nor available online
+     */
+    private static InputStream open(String uri, String cacheKey) throws IOException {
+        Path cacheDirectory = GlobalSettings.getCacheDirectory();
+        if(cacheDirectory == null) {
+            // the read timeout applies to each read, so a server which stops sending is noticed while streaming
+            URLConnection urlConnection = URI.create(uri).toURL().openConnection();
+            int timeoutMillis = (int) Math.min(Integer.MAX_VALUE, GlobalSettings.getRequestTimeout().toMillis());
+            urlConnection.setConnectTimeout(timeoutMillis);
+            urlConnection.setReadTimeout(timeoutMillis);
+            return urlConnection.getInputStream();
+        }
+        return new BufferedInputStream(Files.newInputStream(getCachedFile(getServerDirectory(cacheDirectory), uri, cacheKey)));
+    }
+
+    /**
+     * returns the directory in which the responses of the current server are cached
+     * the directory is named after the server and the hash of its url, as urls which only differ in characters
+     * which cannot be part of a file name would otherwise share a directory
+     * @param cacheDirectory the cache directory
+     * @return the directory of the server
+     */
+    static Path getServerDirectory(Path cacheDirectory) {
+        String server = GlobalSettings.server;
+        String name = server.replaceFirst("^[A-Za-z]+://", "").replaceAll("[^A-Za-z0-9.-]", "_");
+        return cacheDirectory.resolve(name + "_" + Integer.toHexString(server.hashCode()));
+    }
+
+    /**
+     * returns the cached file for a uri, after downloading or revalidating it when necessary
+     * @param cacheDirectory the directory in which the responses of the server of the uri are cached
+     * @param uri            the uri to retrieve
+     * @param cacheKey       key of the response in the cache
+     * @return the cached file
+     * @throws IOException when the response is neither cached nor available online
+     */
+    static Path getCachedFile(Path cacheDirectory, String uri, String cacheKey) throws IOException {
+        String fileName = cacheKey.replaceAll("[^A-Za-z0-9._-]", "_");
+        Path bodyFile = cacheDirectory.resolve(fileName + ".xml");
+        Path metaFile = cacheDirectory.resolve(fileName + ".properties");
+
+        synchronized (fileLocks.computeIfAbsent(bodyFile.toAbsolutePath().normalize(), k -> new Object())) {
+            Properties meta = readMeta(metaFile);
+            boolean cached = Files.exists(bodyFile) && meta != null;
+            if(cached && isFresh(meta)) {
+                return bodyFile;
+            }
+
+            try {
+                fetch(uri, bodyFile, metaFile, cached ? meta : null);
+            } catch (IOException e) {
+                if(!cached) {
+                    throw e;
+                }
+                logger.log(Level.WARN, "Could not revalidate {} ({}); using the cached version", uri, e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while retrieving " + uri);
+            }
+            return bodyFile;
+        }
+    }
+
+    /**
+     * retrieves a uri, sending the validators of the cached response if there is one
+     * @param uri      the uri to retrieve
+     * @param bodyFile file in which the response is stored
+     * @param metaFile file in which the validators are stored
+     * @param meta     validators of the cached response, null if there is none
+     * @throws IOException          when the response cannot be retrieved or stored
+     * @throws InterruptedException when interrupted while waiting for the server
+     */
+    private static void fetch(String uri, Path bodyFile, Path metaFile, Properties meta) throws IOException, InterruptedException {
+        Duration requestTimeout = GlobalSettings.getRequestTimeout();
+        HttpRequest.Builder requestBuilder = HttpRequest.newBuilder(URI.create(uri)).timeout(requestTimeout).GET();
+        if(meta != null) {
+            if(meta.containsKey("etag")) {
+                requestBuilder.header("If-None-Match", meta.getProperty("etag"));
+            }
+            if(meta.containsKey("lastModified")) {
+                requestBuilder.header("If-Modified-Since", meta.getProperty("lastModified"));
+            }
+        }
+
+        Files.createDirectories(bodyFile.getParent());
+        Path tempFile = Files.createTempFile(bodyFile.getParent(), bodyFile.getFileName().toString(), ".tmp");
+        try {
+            HttpResponse<Path> response = send(requestBuilder.build(), tempFile, requestTimeout);
+            Properties newMeta = new Properties();
+            if(response.statusCode() == 304 && meta != null) {
+                newMeta.putAll(meta);
+                logger.log(Level.DEBUG, "Cached response of {} is still valid", uri);
+            }
+            else if(response.statusCode() == 200) {
+                Files.move(tempFile, bodyFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                response.headers().firstValue("ETag").ifPresent(etag -> newMeta.setProperty("etag", etag));
+                response.headers().firstValue("Last-Modified").ifPresent(lastModified -> newMeta.setProperty("lastModified", lastModified));
+                logger.log(Level.DEBUG, "Stored response of {} in the cache", uri);
+            }
+            else {
+                throw new IOException("server responded with status " + response.statusCode());
+            }
+            newMeta.setProperty("fetched", Instant.now().toString());
+            writeMeta(metaFile, newMeta);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    /**
+     * sends a request and stores the response in a file
+     * the timeout of the request only covers waiting for the headers of the response, so receiving the body is
+     * limited by the same timeout as well; the request is cancelled when it takes longer
+     * @param request         the request
+     * @param file            file in which the body of the response is stored
+     * @param requestTimeout  how long the request may take
+     * @return the response
+     * @throws IOException          when the response cannot be retrieved or stored, or takes too long
+     * @throws InterruptedException when interrupted while waiting for the server
+     */
+    private static HttpResponse<Path> send(HttpRequest request, Path file, Duration requestTimeout) throws IOException, InterruptedException {
+        CompletableFuture<HttpResponse<Path>> responseFuture = httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofFile(file));
+        try {
+            return responseFuture.get(requestTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new HttpTimeoutException("no complete response within " + requestTimeout.toSeconds() + " s");
+        } catch (ExecutionException e) {
+            if(e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            throw new IOException(e.getCause().getMessage(), e.getCause());
+        } finally {
+            // aborts the exchange if it is still running
+            responseFuture.cancel(true);
+        }
+    }
+
+    /**
+     * returns whether a cached response is still within its time to live
+     * @param meta validators of the cached response
+     * @return true/false
+     */
+    private static boolean isFresh(Properties meta) {
+        try {
+            Instant fetched = Instant.parse(meta.getProperty("fetched"));
+            return fetched.plus(GlobalSettings.getCacheTimeToLive()).isAfter(Instant.now());
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    /**
+     * reads the validators of a cached response
+     * @param metaFile file in which the validators are stored
+     * @return the validators, or null if there is no (readable) file
+     */
+    private static Properties readMeta(Path metaFile) {
+        if(!Files.exists(metaFile)) {
+            return null;
+        }
+        Properties meta = new Properties();
+        try(Reader reader = Files.newBufferedReader(metaFile)) {
+            meta.load(reader);
+            return meta;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * writes the validators of a cached response, replacing the file at once so readers never see a partial file
+     * @param metaFile file in which the validators are stored
+     * @param meta     the validators
+     * @throws IOException when the file cannot be written
+     */
+    private static void writeMeta(Path metaFile, Properties meta) throws IOException {
+        Path tempFile = Files.createTempFile(metaFile.getParent(), metaFile.getFileName().toString(), ".tmp");
+        try {
+            try(Writer writer = Files.newBufferedWriter(tempFile)) {
+                meta.store(writer, null);
+            }
+            Files.move(tempFile, metaFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2017 NKI/AvL; VUmc 2018/2019/2020
+ *
+ * This file is part of PALGA Protocol Data Translator.
+ *
+ * PALGA Protocol Data Translator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PALGA Protocol Data Translator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PALGA Protocol Data Translator. If not, see <http://www.gnu.org/licenses/>
+ */
+
+package palgadatatranslator.utils;
+
+/**
+ * lets a translation run be cancelled from another thread, such as the GUI
+ * the run checks the token at points where it can stop safely, e.g. once per batch of rows, and stops by throwing a
+ * TranslationCancelledException. The run is not interrupted, as interrupting a thread closes the files it reads and
+ * writes and would leave the shared codebooks half loaded.
+ */
+public class CancellationToken {
+    private volatile boolean cancelled = false;
+
+    /**
+     * requests the run to stop
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * returns whether the run was cancelled
+     * @return true/false
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * stops the run if it was cancelled
+     * @throws TranslationCancelledException when the run was cancelled
+     */
+    public void checkCancelled() {
+        if(cancelled) {
+            throw new TranslationCancelledException();
+        }
+    }
+}
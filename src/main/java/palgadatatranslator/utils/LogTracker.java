@@ -24,52 +24,120 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
- * stores which messages were logged by a class, to prevent some messages from appearing multiple times
+ * collects the issues which occur during a run, so repetitive messages don't flood the log
+ * each distinct message is stored once, with the number of times it occurred; the first occurrence is logged at debug
+ * level and at the end of the run a single summary with the most frequent issues is logged. The number of distinct
+ * messages which is stored is limited; occurrences of other messages are only counted.
+ * messages may be logged from multiple translation threads at the same time
  */
 public class LogTracker {
-    private static Map<Class, List<String>> alreadyLoggedMap = new HashMap<>();
+    private static final Logger logger = LogManager.getLogger(LogTracker.class.getName());
+    private static final int maxIssues = 10000;
+    private static final int summarySize = 20;
+
+    private static final Map<String, Issue> issues = new ConcurrentHashMap<>();
+    // occurrences of messages which were not stored, as there were too many distinct messages
+    private static final LongAdder otherOccurrences = new LongAdder();
 
     /**
-     * returns whether a messages may ben shown. If it has been shown before, returns false
-     * @param aClass    class which wants to show the message
-     * @param message   the message which a class wants to show
-     * @return true/false
+     * uniquely log a message to prevent an overkill of repetitive messages
+     * @param aClass    class which wishes to log a message
+     * @param message   the message the class wishes to log
      */
-    private static boolean mayLogMessage(Class aClass, String message) {
-        if (!alreadyLoggedMap.containsKey(aClass)) {
-            alreadyLoggedMap.put(aClass, new ArrayList<>());
-        }
-        List<String> loggedMessages = alreadyLoggedMap.get(aClass);
-        if (loggedMessages.contains(message)) {
-            return false;
-        }
-        else {
-            loggedMessages.add(message);
-            return true;
+    public static void logMessage(Class<?> aClass, String message) {
+        logMessage(aClass, message, 1);
+    }
+
+    /**
+     * records a message which occurred a number of times, e.g. once for each cell with the same untranslated value
+     * @param aClass      class which wishes to log a message
+     * @param message     the message the class wishes to log
+     * @param occurrences the number of times the issue occurred
+     */
+    public static void logMessage(Class<?> aClass, String message, long occurrences) {
+        Issue issue = issues.get(message);
+        if(issue == null) {
+            if(issues.size() >= maxIssues) {
+                otherOccurrences.add(occurrences);
+                return;
+            }
+            Issue newIssue = new Issue(aClass);
+            issue = issues.putIfAbsent(message, newIssue);
+            if(issue == null) {
+                // only the thread which stored the message logs it
+                issue = newIssue;
+                LogManager.getLogger(aClass.getName()).log(Level.DEBUG, message);
+            }
         }
+        issue.occurrences.add(occurrences);
     }
 
     /**
-     * uniquely log a message to prevent an overkill of repetitive messages
-     * @param aClass    class which wishes to log a message
-     * @param message   the message the class wishes to log
+     * logs a summary of the issues of the run: the number of distinct issues and the most frequent ones
      */
-    public static void logMessage(Class aClass, String message) {
-        Logger logger = LogManager.getLogger(aClass.getName());
-        if(mayLogMessage(aClass, message)){
-            logger.log(Level.ERROR, message);
+    public static void logSummary() {
+        if(issues.isEmpty() && otherOccurrences.sum() == 0) {
+            return;
+        }
+        // keep the most frequent issues in a small heap instead of sorting all of them
+        Comparator<Map.Entry<String, Long>> byOccurrences = Map.Entry.comparingByValue();
+        PriorityQueue<Map.Entry<String, Long>> mostFrequent = new PriorityQueue<>(byOccurrences);
+        long totalOccurrences = otherOccurrences.sum();
+        for(Map.Entry<String, Issue> entry : issues.entrySet()) {
+            long occurrences = entry.getValue().occurrences.sum();
+            totalOccurrences += occurrences;
+            mostFrequent.add(Map.entry(entry.getValue().source.getSimpleName()+": "+entry.getKey(), occurrences));
+            if(mostFrequent.size() > summarySize) {
+                mostFrequent.poll();
+            }
+        }
+        List<Map.Entry<String, Long>> summary = new ArrayList<>(mostFrequent);
+        summary.sort(byOccurrences.reversed());
+
+        StringBuilder stringBuilder = new StringBuilder();
+        stringBuilder.append(issues.size()).append(" distinct issue(s) occurred ").append(totalOccurrences).append(" time(s)");
+        if(issues.size() > summary.size()) {
+            stringBuilder.append("; the ").append(summary.size()).append(" most frequent");
+        }
+        stringBuilder.append(":");
+        for(Map.Entry<String, Long> entry : summary) {
+            stringBuilder.append(System.lineSeparator()).append(entry.getValue()).append("x ").append(entry.getKey());
+        }
+        if(otherOccurrences.sum() > 0) {
+            stringBuilder.append(System.lineSeparator()).append(otherOccurrences.sum()).append("x other issues, which were not stored");
         }
+        logger.log(Level.ERROR, stringBuilder.toString());
     }
 
     /**
-     * clear the alreadyLoggedMap
+     * clear the stored issues
      */
     public static void clearLog(){
-        alreadyLoggedMap.clear();
+        issues.clear();
+        otherOccurrences.reset();
+    }
+
+    /**
+     * a distinct message and the number of times it occurred
+     */
+    private static class Issue {
+        private final Class<?> source;
+        private final LongAdder occurrences = new LongAdder();
+
+        /**
+         * new issue
+         * @param source the class which logged the message
+         */
+        private Issue(Class<?> source) {
+            this.source = source;
+        }
     }
-}
\ No newline at end of file
+}
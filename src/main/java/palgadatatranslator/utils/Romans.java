@@ -77,6 +77,24 @@ public class Romans {
         return romanToOutput.get(roman).trim();
     }
 
+    /**
+     * transforms a roman number to its index, e.g. III to 3
+     * @param roman the roman representation; empty if the column is not repeated
+     * @return the index, or 0 if the column is not repeated
+     */
+    public static int getRomanIndex(String roman){
+        return romanNumbers.indexOf(roman) + 1;
+    }
+
+    /**
+     * transforms an index to its roman number, e.g. 3 to III
+     * @param index the index, or 0 if the column is not repeated
+     * @return the roman representation; empty if the column is not repeated
+     */
+    public static String getRoman(int index){
+        return index == 0 ? "" : romanNumbers.get(index - 1);
+    }
+
     /**
      * comparator for sorting by string length
      */
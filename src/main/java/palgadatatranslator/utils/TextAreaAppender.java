@@ -19,7 +19,9 @@
 
 package palgadatatranslator.utils;
 
-import javafx.application.Platform;
+import javafx.animation.AnimationTimer;
+import javafx.beans.property.ReadOnlyLongProperty;
+import javafx.beans.property.ReadOnlyLongWrapper;
 import javafx.scene.control.TextArea;
 import org.apache.logging.log4j.core.Filter;
 import org.apache.logging.log4j.core.Layout;
@@ -32,6 +34,11 @@ import org.apache.logging.log4j.core.config.plugins.PluginFactory;
 import org.apache.logging.log4j.core.layout.PatternLayout;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * TextAreaAppender, log4j. Uses the log4j2.xml for its parameters
@@ -39,6 +46,11 @@ import java.io.Serializable;
  * elementType: Name of the corresponding category of elements this plugin belongs under. In our case
  * the appender value means indicates an Appender plugin, which is located in the Appender tag in the xml
  * printObject: set to true for appender plugin
+ *
+ * the appender is called from the threads which log, so it only puts the message in a bounded queue; once per frame
+ * the JavaFX Application Thread appends all queued messages to the TextArea with a single appendText. When the queue
+ * is full, messages are dropped instead of making the logging thread wait, and the TextArea only keeps the last
+ * lines. The number of lines which were dropped in either way is available as a property, so it can be shown.
  */
 @Plugin(
         category = "Core",
@@ -47,7 +59,17 @@ import java.io.Serializable;
         printObject = true
 )
 public class TextAreaAppender extends AbstractAppender {
+    private static final int maxQueuedMessages = 10000;
+    private static final int maxLines = 5000;
+
+    private static final BlockingQueue<String> queuedMessages = new ArrayBlockingQueue<>(maxQueuedMessages);
+    // lines dropped because the queue was full; added to the property by the JavaFX Application Thread
+    private static final AtomicLong droppedMessages = new AtomicLong();
+    private static final ReadOnlyLongWrapper droppedLines = new ReadOnlyLongWrapper(0);
     private static TextArea textArea;
+    private static AnimationTimer drainTimer;
+    // only used by the JavaFX Application Thread
+    private static int linesSinceTrim = 0;
 
     private TextAreaAppender(String name, Filter filter, Layout<? extends Serializable> layout) {
         super(name, filter, layout);
@@ -80,33 +102,113 @@ public class TextAreaAppender extends AbstractAppender {
     }
 
     /**
-     * Set TextArea for the appender
+     * Set TextArea for the appender; has to be called from the JavaFX Application Thread, which starts appending the
+     * queued messages every frame
      *
      * @param textArea TextArea for the appender
      */
     public static void setTextArea(TextArea textArea) {
         TextAreaAppender.textArea = textArea;
+        if (drainTimer == null) {
+            drainTimer = new AnimationTimer() {
+                @Override
+                public void handle(long now) {
+                    drainMessages();
+                }
+            };
+            drainTimer.start();
+        }
+    }
+
+    /**
+     * returns the number of log lines which were not shown or removed again, as there were too many
+     *
+     * @return the property with the number of dropped lines
+     */
+    public static ReadOnlyLongProperty droppedLinesProperty() {
+        return droppedLines.getReadOnlyProperty();
     }
 
     /**
-     * Appender receives a LogEvent and appends it to the textArea
+     * Appender receives a LogEvent and queues it for the textArea
      *
      * @param event Log event
      */
     @Override
     public void append(LogEvent event) {
+        if (textArea == null) {
+            return;
+        }
         // format the message and transform it into a String
         final String message = new String(getLayout().toByteArray(event));
+        if (!queuedMessages.offer(message)) {
+            droppedMessages.incrementAndGet();
+        }
+    }
 
-        // append log text to TextArea, run on the JavaFX Application Thread
-        Platform.runLater(() -> {
-            try {
-                if (textArea != null) {
-                    textArea.appendText(message);
-                }
-            } catch (Exception e) {
-                System.err.println("Exception occurred while appending to the text area: " + e.getMessage());
+    /**
+     * appends the queued messages to the TextArea at once and removes the oldest lines if there are too many
+     * runs on the JavaFX Application Thread
+     */
+    private static void drainMessages() {
+        long dropped = droppedMessages.getAndSet(0);
+        if (queuedMessages.isEmpty()) {
+            addDroppedLines(dropped);
+            return;
+        }
+        List<String> messages = new ArrayList<>(queuedMessages.size());
+        queuedMessages.drainTo(messages);
+        StringBuilder stringBuilder = new StringBuilder();
+        for (String message : messages) {
+            stringBuilder.append(message);
+        }
+        try {
+            textArea.appendText(stringBuilder.toString());
+            linesSinceTrim += messages.size();
+            // counting the lines requires the whole text, so this is only done once in a while
+            if (linesSinceTrim > maxLines / 10) {
+                dropped += trimLines();
+                linesSinceTrim = 0;
             }
-        });
+        } catch (Exception e) {
+            System.err.println("Exception occurred while appending to the text area: " + e.getMessage());
+        }
+        addDroppedLines(dropped);
+    }
+
+    /**
+     * removes the oldest lines of the TextArea, keeping the last maxLines lines
+     *
+     * @return the number of removed lines
+     */
+    private static int trimLines() {
+        String text = textArea.getText();
+        int lines = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '\n') {
+                lines++;
+            }
+        }
+        int removedLines = lines - maxLines;
+        if (removedLines <= 0) {
+            return 0;
+        }
+        int end = 0;
+        for (int i = 0; i < removedLines; i++) {
+            end = text.indexOf('\n', end) + 1;
+        }
+        textArea.deleteText(0, end);
+        return removedLines;
+    }
+
+    /**
+     * adds to the number of dropped lines
+     *
+     * @param lines the number of lines which were dropped
+     */
+    private static void addDroppedLines(long lines) {
+        if (lines > 0) {
+            droppedLines.set(droppedLines.get() + lines);
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2017 NKI/AvL; VUmc 2018/2019/2020
+ *
+ * This file is part of PALGA Protocol Data Translator.
+ *
+ * PALGA Protocol Data Translator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PALGA Protocol Data Translator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PALGA Protocol Data Translator. If not, see <http://www.gnu.org/licenses/>
+ */
+
+package palgadatatranslator.utils.enumerate;
+
+/**
+ * types of data files we can read
+ * the type of a data file is derived from its extension; files which are not recognised are read as text
+ */
+public enum InputFileType {
+    TEXT ("Text file", ".txt"),
+    XLSX ("Excel workbook", ".xlsx");
+
+    private final String prettyString;
+    private final String extension;
+
+    /**
+     * constructor
+     * @param prettyString a pretty string for the Enum
+     * @param extension    the extension of files of this type
+     */
+    InputFileType(String prettyString, String extension){
+        this.prettyString = prettyString;
+        this.extension = extension;
+    }
+
+    /**
+     * returns the pretty string
+     * @return the pretty string
+     */
+    public String getPrettyString(){
+        return prettyString;
+    }
+
+    /**
+     * returns the extension of files of this type
+     * @return the extension, including the dot
+     */
+    public String getExtension(){
+        return extension;
+    }
+
+    /**
+     * returns the InputFileType based on the pretty string
+     * @param prettyString the pretty string
+     * @return the InputFileType
+     */
+    public static InputFileType getEnum(String prettyString){
+        for(InputFileType inputFileType: InputFileType.values()){
+            if(inputFileType.prettyString.equalsIgnoreCase(prettyString)){
+                return inputFileType;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * returns the InputFileType based on the extension of a file name
+     * @param fileName the name of the data file
+     * @return the InputFileType, TEXT if the extension is not recognised
+     */
+    public static InputFileType getFileType(String fileName){
+        for(InputFileType inputFileType: InputFileType.values()){
+            if(fileName.toLowerCase().endsWith(inputFileType.extension)){
+                return inputFileType;
+            }
+        }
+        return TEXT;
+    }
+}
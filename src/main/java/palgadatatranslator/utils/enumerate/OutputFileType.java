@@ -24,16 +24,20 @@ package palgadatatranslator.utils.enumerate;
  * originally we also supported transmart as an output type, but this was removed due to transmart being phased out
  */
 public enum OutputFileType {
-    TEXT ("Text file");
+    TEXT ("Text file", ".txt"),
+    XLSX ("Excel workbook", ".xlsx");
 
     private final String prettyString;
+    private final String extension;
 
     /**
      * constructor
      * @param prettyString a pretty string for the Enum
+     * @param extension    the extension of files of this type
      */
-    OutputFileType(String prettyString){
+    OutputFileType(String prettyString, String extension){
         this.prettyString = prettyString;
+        this.extension = extension;
     }
 
     /**
@@ -44,6 +48,14 @@ public enum OutputFileType {
         return prettyString;
     }
 
+    /**
+     * returns the extension of files of this type
+     * @return the extension, including the dot
+     */
+    public String getExtension(){
+        return extension;
+    }
+
     /**
      * returns the OutputFileType based on the pretty string
      * @param prettyString the pretty string
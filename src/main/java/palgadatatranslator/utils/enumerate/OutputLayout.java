@@ -0,0 +1,63 @@
+/*
+ * Copyright 2017 NKI/AvL; VUmc 2018/2019/2020
+ *
+ * This file is part of PALGA Protocol Data Translator.
+ *
+ * PALGA Protocol Data Translator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PALGA Protocol Data Translator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PALGA Protocol Data Translator. If not, see <http://www.gnu.org/licenses/>
+ */
+
+package palgadatatranslator.utils.enumerate;
+
+/**
+ * layouts in which the translated data can be written
+ * wide writes a line for each data line, with a column for each concept, like the data file
+ * entity-attribute-value writes a line for each value which is not empty, with the number of the data line, the
+ * original column, its repeat, the translated concept and the translated value; for sparse data this is much smaller
+ */
+public enum OutputLayout {
+    WIDE ("One line per data line"),
+    ENTITY_ATTRIBUTE_VALUE ("One line per value");
+
+    private final String prettyString;
+
+    /**
+     * constructor
+     * @param prettyString a pretty string for the Enum
+     */
+    OutputLayout(String prettyString){
+        this.prettyString = prettyString;
+    }
+
+    /**
+     * returns the pretty string
+     * @return the pretty string
+     */
+    public String getPrettyString(){
+        return prettyString;
+    }
+
+    /**
+     * returns the OutputLayout based on the pretty string
+     * @param prettyString the pretty string
+     * @return the OutputLayout
+     */
+    public static OutputLayout getEnum(String prettyString){
+        for(OutputLayout outputLayout: OutputLayout.values()){
+            if(outputLayout.prettyString.equalsIgnoreCase(prettyString)){
+                return outputLayout;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2017 NKI/AvL; VUmc 2018/2019/2020
+ *
+ * This file is part of PALGA Protocol Data Translator.
+ *
+ * PALGA Protocol Data Translator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PALGA Protocol Data Translator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PALGA Protocol Data Translator. If not, see <http://www.gnu.org/licenses/>
+ */
+
+package palgadatatranslator.utils.enumerate;
+
+/**
+ * ways in which the data file can be processed
+ * buffered keeps all data lines in memory, encoded per column, between reading, translating and writing
+ * streaming reads the file twice: the first pass collects the header information and the versions used, the
+ * second pass translates and writes each line as it is read, keeping memory use constant
+ * pipelined reads the file twice like streaming, but in the second pass reading, translating and writing run on
+ * their own threads, connected by bounded queues
+ */
+public enum ProcessingMode {
+    BUFFERED ("Keep data in memory"),
+    STREAMING ("Stream data from disk"),
+    PIPELINED ("Stream data through a pipeline");
+
+    private final String prettyString;
+
+    /**
+     * constructor
+     * @param prettyString a pretty string for the Enum
+     */
+    ProcessingMode(String prettyString){
+        this.prettyString = prettyString;
+    }
+
+    /**
+     * returns the pretty string
+     * @return the pretty string
+     */
+    public String getPrettyString(){
+        return prettyString;
+    }
+
+    /**
+     * returns whether the data is read from disk again while translating instead of kept in memory
+     * @return true/false
+     */
+    public boolean isStreaming(){
+        return this != BUFFERED;
+    }
+
+    /**
+     * returns the ProcessingMode based on the pretty string
+     * @param prettyString the pretty string
+     * @return the ProcessingMode
+     */
+    public static ProcessingMode getEnum(String prettyString){
+        for(ProcessingMode processingMode: ProcessingMode.values()){
+            if(processingMode.prettyString.equalsIgnoreCase(prettyString)){
+                return processingMode;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2017 NKI/AvL; VUmc 2018/2019/2020
+ *
+ * This file is part of PALGA Protocol Data Translator.
+ *
+ * PALGA Protocol Data Translator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PALGA Protocol Data Translator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PALGA Protocol Data Translator. If not, see <http://www.gnu.org/licenses/>
+ */
+
+package palgadatatranslator.utils.enumerate;
+
+/**
+ * the phases of a translation run, in the order in which they occur, with the unit in which their progress is counted
+ * when the data is buffered, the lines are only translated value by value while they are written, so the rows are
+ * counted in the write phase; otherwise they are counted in the translate phase
+ */
+public enum TranslationPhase {
+    READ ("Reading", "rows"),
+    CODEBOOK_FETCH ("Retrieving codebooks", "versions"),
+    ROMANS ("Identifying roman numbers", "columns"),
+    TRANSLATE ("Translating", "rows"),
+    WRITE ("Writing", "rows");
+
+    private final String prettyString;
+    private final String unit;
+
+    /**
+     * constructor
+     * @param prettyString a pretty string for the Enum
+     * @param unit         the unit in which the progress of the phase is counted
+     */
+    TranslationPhase(String prettyString, String unit){
+        this.prettyString = prettyString;
+        this.unit = unit;
+    }
+
+    /**
+     * returns the pretty string
+     * @return the pretty string
+     */
+    public String getPrettyString(){
+        return prettyString;
+    }
+
+    /**
+     * returns the unit in which the progress of the phase is counted
+     * @return the unit
+     */
+    public String getUnit(){
+        return unit;
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2017 NKI/AvL; VUmc 2018/2019/2020
+ *
+ * This file is part of PALGA Protocol Data Translator.
+ *
+ * PALGA Protocol Data Translator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PALGA Protocol Data Translator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PALGA Protocol Data Translator. If not, see <http://www.gnu.org/licenses/>
+ */
+
+package palgadatatranslator.codebook;
+
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import palgadatatranslator.utils.enumerate.OutputFormatType;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * checks that the StAX parser of the codebooks creates the same concepts as the DOM walk it replaced
+ */
+class DecorCodebookParserTest {
+    private static final String dataset = "dataset.xml";
+
+    @Test
+    void createsTheSameConceptsAsTheDomLoader() throws Exception {
+        Map<String, Concept> domPalgaColNames = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        Map<String, Concept> domIds = new HashMap<>();
+        try(InputStream inputStream = openDataset()) {
+            new DomCodebookLoader(domPalgaColNames, domIds).load(inputStream);
+        }
+        Map<String, Concept> staxPalgaColNames = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        Map<String, Concept> staxIds = new HashMap<>();
+        try(InputStream inputStream = openDataset()) {
+            parse(inputStream, staxPalgaColNames, staxIds);
+        }
+
+        // the fixture has to contain concepts, or the comparison proves nothing
+        assertEquals(List.of("Datum", "Diameter", "Lokalisatie", "Radicaliteit", "Tumor"), new ArrayList<>(domPalgaColNames.keySet()));
+        assertEquals("71854001", domPalgaColNames.get("lokalisatie").translateValue("Colon", OutputFormatType.CODES));
+
+        Set<String> values = getDesignations();
+        assertEquals(domPalgaColNames.keySet(), staxPalgaColNames.keySet());
+        for(String palgaColName : domPalgaColNames.keySet()) {
+            assertSameConcept(domPalgaColNames.get(palgaColName), staxPalgaColNames.get(palgaColName), values);
+        }
+        assertEquals(domIds.keySet(), staxIds.keySet());
+        for(String id : domIds.keySet()) {
+            assertSameConcept(domIds.get(id), staxIds.get(id), values);
+        }
+    }
+
+    @Test
+    void failsOnATruncatedDataset() throws Exception {
+        byte[] xml;
+        try(InputStream inputStream = openDataset()) {
+            xml = inputStream.readAllBytes();
+        }
+        byte[] truncatedXml = Arrays.copyOf(xml, xml.length / 2);
+        Map<String, Concept> palgaColNames = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        Map<String, Concept> ids = new HashMap<>();
+        assertThrows(XMLStreamException.class, () -> parse(new ByteArrayInputStream(truncatedXml), palgaColNames, ids));
+    }
+
+    /**
+     * checks that two concepts have the same identifier, column name translations and values
+     * @param expected the concept of the DOM loader
+     * @param actual   the concept of the StAX parser
+     * @param values   the values to compare the translations of
+     */
+    private static void assertSameConcept(Concept expected, Concept actual, Set<String> values) {
+        assertNotNull(actual);
+        assertEquals(expected.getConceptId(), actual.getConceptId());
+        assertEquals(expected.hasConceptListItems(), actual.hasConceptListItems());
+        for(OutputFormatType outputFormatType : OutputFormatType.values()) {
+            assertEquals(expected.translateHeaderName(outputFormatType), actual.translateHeaderName(outputFormatType));
+            for(String value : values) {
+                assertEquals(expected.containsValue(value), actual.containsValue(value), value);
+                assertEquals(expected.translateValue(value, outputFormatType), actual.translateValue(value, outputFormatType), value);
+            }
+        }
+    }
+
+    /**
+     * parses the dataset with the StAX parser
+     * @param inputStream   stream with the dataset
+     * @param palgaColNames map to which the concepts are added by PALGA column name
+     * @param ids           map to which the concepts are added by art-decor identifier
+     * @throws XMLStreamException when the dataset cannot be parsed
+     */
+    private static void parse(InputStream inputStream, Map<String, Concept> palgaColNames, Map<String, Concept> ids) throws XMLStreamException {
+        XMLStreamReader xmlStreamReader = XMLInputFactory.newInstance().createXMLStreamReader(inputStream);
+        try {
+            new DecorCodebookParser(palgaColNames, ids).parse(xmlStreamReader);
+        } finally {
+            xmlStreamReader.close();
+        }
+    }
+
+    /**
+     * returns the names of all designations in the dataset, which are the values the concepts may contain, together
+     * with the empty value of an entry without a preferred designation and a value which is in none of the concepts
+     * @return the values
+     * @throws Exception when the dataset cannot be read
+     */
+    private static Set<String> getDesignations() throws Exception {
+        Set<String> designations = new TreeSet<>(List.of("", "Unknown value"));
+        try(InputStream inputStream = openDataset()) {
+            NodeList nodeList = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(inputStream).getElementsByTagName("designation");
+            for(int i = 0; i < nodeList.getLength(); i++) {
+                designations.add(((Element) nodeList.item(i)).getAttribute("displayName"));
+            }
+        }
+        return designations;
+    }
+
+    /**
+     * opens the dataset of the tests
+     * @return stream with the dataset
+     */
+    private static InputStream openDataset() {
+        InputStream inputStream = DecorCodebookParserTest.class.getResourceAsStream(dataset);
+        assertNotNull(inputStream, dataset);
+        return inputStream;
+    }
+}
@@ -0,0 +1,262 @@
+/*
+ * Copyright 2017 NKI/AvL; VUmc 2018/2019/2020
+ *
+ * This file is part of PALGA Protocol Data Translator.
+ *
+ * PALGA Protocol Data Translator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PALGA Protocol Data Translator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PALGA Protocol Data Translator. If not, see <http://www.gnu.org/licenses/>
+ */
+
+package palgadatatranslator.codebook;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * the DOM based loader which DecorCodebook used before the codebooks were parsed with StAX
+ * it is only kept for the tests, which check that the StAX parser creates the same concepts
+ */
+class DomCodebookLoader {
+    private final Map<String, Concept> palgaColNameToConceptMap;
+    private final Map<String, Concept> idToConceptMap;
+
+    /**
+     * new loader
+     * @param palgaColNameToConceptMap map to which the concepts are added by PALGA column name
+     * @param idToConceptMap           map to which the concepts are added by art-decor identifier
+     */
+    DomCodebookLoader(Map<String, Concept> palgaColNameToConceptMap, Map<String, Concept> idToConceptMap){
+        this.palgaColNameToConceptMap = palgaColNameToConceptMap;
+        this.idToConceptMap = idToConceptMap;
+    }
+
+    /**
+     * builds the document of the codebook and walks it
+     * @param inputStream stream with the xml of the codebook
+     * @throws Exception when the xml cannot be parsed
+     */
+    void load(InputStream inputStream) throws Exception {
+        DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
+        DocumentBuilder db = dbf.newDocumentBuilder();
+        Document dom = db.parse(inputStream);
+        //get the root element
+        Element rootElement = dom.getDocumentElement();
+        createBook(rootElement);
+    }
+
+    /**
+     * parses the codebook starting from the root element
+     * @param rootElement the rootelement
+     */
+    private void createBook(Element rootElement) {
+        List<Element> conceptList = getChildElementsWithName(rootElement, "concept");
+
+        for (Element conceptElement : conceptList) {
+            if(isGroupElement(conceptElement)){
+                createBook(conceptElement);
+            }
+
+            if (hasValidStatusCode(conceptElement)) {
+                handleConceptElement(conceptElement);
+            }
+        }
+    }
+
+    /**
+     * Handles a concept element, checking for the palga column name, creating the concept, etc.
+     * @param conceptElement the concept element from the xml file
+     */
+    private void handleConceptElement(Element conceptElement) {
+        String palgaColName = getPalgaColNameAttributeValue(conceptElement);
+        if(!palgaColName.equalsIgnoreCase("")){
+            Concept concept = createConcept(conceptElement, palgaColName);
+            palgaColNameToConceptMap.put(palgaColName, concept);
+            idToConceptMap.put(concept.getConceptId(), concept);
+            addTerminology(conceptElement);
+        }
+    }
+
+    /**
+     * adds terminology associations to concepts
+     * @param rootElement the root element
+     */
+    private void addTerminology(Element rootElement) {
+        List<Element> terminologyAssociationList = getChildElementsWithName(rootElement, "terminologyAssociation");
+        for(Element terminologyAssociationElement:terminologyAssociationList){
+            String conceptId = getAttributeValue(terminologyAssociationElement, "conceptId");
+            if(idToConceptMap.containsKey(conceptId)){
+                Concept concept = idToConceptMap.get(conceptId);
+                String conceptCode = terminologyAssociationElement.getAttribute("code");
+                String codeSystemName = terminologyAssociationElement.getAttribute("codeSystemName");
+                String displayName = terminologyAssociationElement.getAttribute("displayName");
+                concept.addConceptTerminology(conceptCode, codeSystemName, displayName);
+            }
+        }
+    }
+
+    /**
+     * creates a new concept from a conceptElement
+     * @param conceptElement a concept element
+     * @param palgaColName   the name of the item in PALGA
+     * @return the newly created concept
+     */
+    private Concept createConcept(Element conceptElement, String palgaColName){
+        String conceptId = getAttributeValue(conceptElement, "id");
+        Concept concept = new Concept(conceptId, palgaColName);
+
+        addValueSet(concept, conceptElement);
+
+        return concept;
+    }
+
+    /**
+     * adds a value set to a concept, if one exists
+     * @param concept        the concept to which to add the value set
+     * @param conceptElement the xml concept element in which to look for the valueset
+     */
+    private void addValueSet(Concept concept, Element conceptElement){
+        Element valueSetElement = getChildElementWithName(conceptElement, "valueSet");
+        if(valueSetElement!=null) {
+            Element conceptListElement = getChildElementWithName(valueSetElement, "conceptList");
+            // elements are in the concept tag, but may also be in the exception tag (NULLFlavors)
+            addValueSet(concept, getChildElementsWithName(conceptListElement, "concept"));
+            addValueSet(concept, getChildElementsWithName(conceptListElement, "exception"));
+        }
+    }
+
+    /**
+     * adds elements from a list to the concept list
+     * @param concept   the concept to which to add the value set
+     * @param elements  list with elements
+     */
+    private void addValueSet(Concept concept, List<Element> elements){
+        for (Element entryElement : elements) {
+            String valueCode = getAttributeValue(entryElement, "code");
+            String valueCodeSystem = getAttributeValue(entryElement, "codeSystemName");
+            String valueDisplayName = getAttributeValue(entryElement, "displayName");
+
+            String textInLanguage = getTextInLanguage(entryElement);
+            concept.addConceptListItem(valueCode, valueCodeSystem, valueDisplayName, textInLanguage);
+        }
+    }
+
+    /**
+     * returns the preferred name of the value. This is used in art-decor and is the value as it appears in PALGA
+     * @param entryElement xml element of a value set entry
+     * @return the value as it appears in PALGA
+     */
+    private static String getTextInLanguage(Element entryElement){
+        String textInLanguage="";
+        List<Element> designationElements = getChildElementsWithName(entryElement, "designation");
+        for(Element designationElement:designationElements) {
+            String designationType = getAttributeValue(designationElement, "type");
+            if(designationType.equalsIgnoreCase("preferred")){
+                textInLanguage = designationElement.getAttribute("displayName");
+            }
+        }
+        return textInLanguage;
+    }
+
+    /**
+     * returns the value of the COL_NAME property for the concept element
+     * @param conceptElement the xml of the concept, in which to look for the property
+     * @return  the PALGA_COLNAME value or empty string
+     */
+    private static String getPalgaColNameAttributeValue(Element conceptElement){
+        List<Element> propertyElementsList = getChildElementsWithName(conceptElement, "property");
+        for(Element propertyElement:propertyElementsList){
+            String attributeValue = getAttributeValue(propertyElement, "name");
+            if(attributeValue.equalsIgnoreCase("PALGA_COLNAME")){
+                return propertyElement.getTextContent().trim();
+            }
+        }
+        return "";
+    }
+
+    /**
+     * returns the value of an xml attribute
+     * @param element       element which contains the attribute
+     * @param attributeName name of the attribute
+     * @return the value of an xml attribute
+     */
+    private static String getAttributeValue(Element element, String attributeName){
+        return element.getAttribute(attributeName);
+    }
+
+    /**
+     * checks whether this element is of interest for us in our codebook, which depends on the statuscode of the element;
+     * we're only interested in items which are "draft" or "final"
+     * @param element the element to check
+     * @return true/false
+     */
+    private static boolean hasValidStatusCode(Element element){
+        String statusCode = element.getAttribute("statusCode");
+        return statusCode.equalsIgnoreCase("draft") || statusCode.equalsIgnoreCase("final");
+    }
+
+    /**
+     * returns the first child element with a certain name
+     * @param element the parent element
+     * @param name    name of the element we're looking for
+     * @return the child element
+     */
+    private static Element getChildElementWithName(Element element, String name){
+        NodeList nodeList = element.getChildNodes();
+        for (int i=0; i<nodeList.getLength(); i++){
+            Node node = nodeList.item(i);
+            if (node.getNodeType() == Node.ELEMENT_NODE
+                    && ((Element) node).getTagName().equals(name)) {
+                return (Element) node;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * returns a list of all child elements with a certain name
+     * @param element parent element
+     * @param name    name to look for
+     * @return list of children
+     */
+    private static List<Element> getChildElementsWithName(Element element, String name){
+        List<Element> elementsWithName = new ArrayList<>();
+        NodeList nodeList = element.getChildNodes();
+        for (int i=0; i<nodeList.getLength(); i++){
+            Node node = nodeList.item(i);
+            if (node.getNodeType() == Node.ELEMENT_NODE
+                    && ((Element) node).getTagName().equals(name)) {
+                elementsWithName.add((Element) node);
+            }
+        }
+        return elementsWithName;
+    }
+
+    /**
+     * checks whether an element is a group element
+     * @param conceptElement the element to check
+     * @return true/false
+     */
+    private static boolean isGroupElement(Element conceptElement){
+        String elementType = getAttributeValue(conceptElement, "type");
+        return elementType.equalsIgnoreCase("group");
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2017 NKI/AvL; VUmc 2018/2019/2020
+ *
+ * This file is part of PALGA Protocol Data Translator.
+ *
+ * PALGA Protocol Data Translator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PALGA Protocol Data Translator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PALGA Protocol Data Translator. If not, see <http://www.gnu.org/licenses/>
+ */
+
+
+package palgadatatranslator.data.in;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import palgadatatranslator.settings.RunParameters;
+import palgadatatranslator.utils.enumerate.OutputFileType;
+import palgadatatranslator.utils.enumerate.OutputFormatType;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * compares reading a data file with the text data reader to the way the lines were read before it: each line read by
+ * a BufferedReader, split on tabs and cleaned value by value in a stream
+ *
+ * the benchmarks are not run by the tests; run them with the test classpath, e.g.
+ * java -cp target/test-classes:target/classes:&lt;dependencies&gt; org.openjdk.jmh.Main TextDataReaderBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TextDataReaderBenchmark {
+    private static final int columnCount = 40;
+    private static final int lineCount = 20000;
+
+    private Path dataFile;
+
+    /**
+     * writes a data file with a mix of codes, numbers, empty values and values which have to be cleaned
+     * @throws IOException when the file cannot be written
+     */
+    @Setup(Level.Trial)
+    public void writeDataFile() throws IOException {
+        dataFile = Files.createTempFile("benchmark", ".txt");
+        try(BufferedWriter writer = Files.newBufferedWriter(dataFile, StandardCharsets.ISO_8859_1)) {
+            for(int column=0; column<columnCount; column++){
+                writer.write((column == 0 ? "" : "\t") + "Concept" + column);
+            }
+            writer.newLine();
+            for(int line=0; line<lineCount; line++){
+                for(int column=0; column<columnCount; column++){
+                    if(column > 0){
+                        writer.write('\t');
+                    }
+                    switch((line + column) % 5) {
+                        case 0 -> writer.write("");
+                        case 1 -> writer.write(String.valueOf(line % 100));
+                        case 2 -> writer.write("code" + column % 7);
+                        case 3 -> writer.write(" \"Value with quotes\" ");
+                        default -> writer.write("Een omschrijving van " + column);
+                    }
+                }
+                writer.newLine();
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteDataFile() throws IOException {
+        Files.deleteIfExists(dataFile);
+    }
+
+    @Benchmark
+    public void textDataReader(Blackhole blackhole) {
+        RunParameters runParameters = new RunParameters(dataFile.toString(), "", OutputFormatType.CODES, OutputFileType.TEXT, "");
+        new TextDataReader(runParameters).read(blackhole::consume, blackhole::consume);
+    }
+
+    @Benchmark
+    public void splitAndCleanEveryLine(Blackhole blackhole) throws IOException {
+        try(BufferedReader reader = Files.newBufferedReader(dataFile, StandardCharsets.ISO_8859_1)) {
+            blackhole.consume(Arrays.asList(reader.readLine().split("\t")));
+            String line;
+            while((line = reader.readLine()) != null){
+                blackhole.consume(prepareLine(line));
+            }
+        }
+    }
+
+    /**
+     * prepare the line, changing it to a list and cleaning it, like InputDataDefault did before the text data reader
+     * @param line the line to prepare
+     * @return list representation of the line
+     */
+    private static List<String> prepareLine(String line){
+        String [] splitLine = line.split("\t", -1);
+        return Arrays.stream(splitLine).map(TextDataReaderBenchmark::cleanValue).collect(Collectors.toList());
+    }
+
+    /**
+     * trim the value and remove quotes that excel sometimes adds
+     * @param value value to clean
+     * @return cleaned value
+     */
+    private static String cleanValue(String value){
+        value = value.trim();
+        if(value.startsWith("\"") && value.endsWith("\"")){
+            value = value.substring(1, value.length()-1);
+        }
+        return value;
+    }
+}
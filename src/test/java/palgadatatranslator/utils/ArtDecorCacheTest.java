@@ -0,0 +1,179 @@
+/*
+ * Copyright 2017 NKI/AvL; VUmc 2018/2019/2020
+ *
+ * This file is part of PALGA Protocol Data Translator.
+ *
+ * PALGA Protocol Data Translator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PALGA Protocol Data Translator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PALGA Protocol Data Translator. If not, see <http://www.gnu.org/licenses/>
+ */
+
+
+package palgadatatranslator.utils;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import palgadatatranslator.settings.GlobalSettings;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * checks the caching of art-decor responses against a stand-in server
+ */
+class ArtDecorCacheTest {
+    private static final String etag = "\"v1\"";
+
+    @TempDir
+    Path cacheDirectory;
+
+    private HttpServer httpServer;
+    private ExecutorService executorService;
+    // keeps a stalled response open until the test is done
+    private final CountDownLatch stopped = new CountDownLatch(1);
+    private String uri;
+    // status the stand-in server responds with; 0 stops responding halfway through the body
+    private volatile int status = 200;
+    // the If-None-Match header of each request the stand-in server received
+    private final List<String> requests = new CopyOnWriteArrayList<>();
+
+    private String originalServer;
+    private Duration originalCacheTimeToLive;
+    private Duration originalRequestTimeout;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        originalServer = GlobalSettings.server;
+        originalCacheTimeToLive = GlobalSettings.getCacheTimeToLive();
+        originalRequestTimeout = GlobalSettings.getRequestTimeout();
+
+        httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        httpServer.createContext("/services/", this::respond);
+        executorService = Executors.newCachedThreadPool();
+        httpServer.setExecutor(executorService);
+        httpServer.start();
+        GlobalSettings.server = "http://localhost:" + httpServer.getAddress().getPort() + "/services/";
+        uri = GlobalSettings.server + "RetrieveDataSet?id=1&language=nl-NL&format=xml";
+    }
+
+    @AfterEach
+    void stopServer() {
+        stopped.countDown();
+        httpServer.stop(0);
+        executorService.shutdownNow();
+        GlobalSettings.server = originalServer;
+        GlobalSettings.setCacheTimeToLive(originalCacheTimeToLive);
+        GlobalSettings.setRequestTimeout(originalRequestTimeout);
+    }
+
+    private void respond(HttpExchange exchange) throws IOException {
+        String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+        requests.add(ifNoneMatch == null ? "" : ifNoneMatch);
+        try(exchange) {
+            if(status == 200 && etag.equals(ifNoneMatch)) {
+                exchange.sendResponseHeaders(304, -1);
+                return;
+            }
+            byte[] body = "<dataset/>".getBytes(StandardCharsets.UTF_8);
+            if(status == 0) {
+                // announces the body, but only sends the first byte of it
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream outputStream = exchange.getResponseBody();
+                outputStream.write(body, 0, 1);
+                outputStream.flush();
+                stopped.await();
+                return;
+            }
+            exchange.getResponseHeaders().set("ETag", etag);
+            exchange.sendResponseHeaders(status, body.length);
+            exchange.getResponseBody().write(body);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Test
+    void usesTheCachedResponseWithinTheTimeToLive() throws IOException {
+        GlobalSettings.setCacheTimeToLive(Duration.ofHours(1));
+        Path cachedFile = ArtDecorCache.getCachedFile(cacheDirectory, uri, "dataset");
+        assertEquals("<dataset/>", Files.readString(cachedFile));
+        assertEquals(cachedFile, ArtDecorCache.getCachedFile(cacheDirectory, uri, "dataset"));
+        assertEquals(List.of(""), requests);
+    }
+
+    @Test
+    void revalidatesAfterTheTimeToLive() throws IOException {
+        GlobalSettings.setCacheTimeToLive(Duration.ZERO);
+        ArtDecorCache.getCachedFile(cacheDirectory, uri, "dataset");
+        Path cachedFile = ArtDecorCache.getCachedFile(cacheDirectory, uri, "dataset");
+        assertEquals("<dataset/>", Files.readString(cachedFile));
+        assertEquals(List.of("", etag), requests);
+    }
+
+    @Test
+    void usesTheCachedResponseWhenTheServerFails() throws IOException {
+        GlobalSettings.setCacheTimeToLive(Duration.ZERO);
+        ArtDecorCache.getCachedFile(cacheDirectory, uri, "dataset");
+        status = 500;
+        Path cachedFile = ArtDecorCache.getCachedFile(cacheDirectory, uri, "dataset");
+        assertEquals("<dataset/>", Files.readString(cachedFile));
+        assertEquals(2, requests.size());
+    }
+
+    @Test
+    void failsWhenTheServerFailsWithoutACachedResponse() {
+        status = 500;
+        assertThrows(IOException.class, () -> ArtDecorCache.getCachedFile(cacheDirectory, uri, "dataset"));
+        assertFalse(Files.exists(cacheDirectory.resolve("dataset.xml")));
+    }
+
+    @Test
+    void cachesEachServerSeparately() throws IOException {
+        GlobalSettings.setCacheTimeToLive(Duration.ofHours(1));
+        Path serverDirectory = ArtDecorCache.getServerDirectory(cacheDirectory);
+        ArtDecorCache.getCachedFile(serverDirectory, uri, "dataset");
+
+        // the same server under another name
+        GlobalSettings.server = "http://127.0.0.1:" + httpServer.getAddress().getPort() + "/services/";
+        Path otherServerDirectory = ArtDecorCache.getServerDirectory(cacheDirectory);
+        assertNotEquals(serverDirectory, otherServerDirectory);
+        ArtDecorCache.getCachedFile(otherServerDirectory, uri, "dataset");
+        assertEquals(2, requests.size());
+    }
+
+    @Test
+    void timesOutWhenTheServerStopsResponding() {
+        GlobalSettings.setRequestTimeout(Duration.ofMillis(500));
+        status = 0;
+        long start = System.nanoTime();
+        assertThrows(HttpTimeoutException.class, () -> ArtDecorCache.getCachedFile(cacheDirectory, uri, "dataset"));
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).compareTo(Duration.ofSeconds(4)) < 0);
+    }
+}